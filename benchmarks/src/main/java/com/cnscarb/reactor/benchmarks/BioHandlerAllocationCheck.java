@@ -0,0 +1,58 @@
+package com.cnscarb.reactor.benchmarks;
+
+import com.cnscarb.reactor.bio.BioHandler;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * 检查 BIO 模式处理每行请求时不分配内存，有分配时以状态码 1 退出
+ * <pre>
+ * java -cp target/benchmarks.jar com.cnscarb.reactor.benchmarks.BioHandlerAllocationCheck
+ * </pre>
+ * 同一个连接分别发送 {@link #LINES} 行和 2 * {@link #LINES} 行，用当前线程的分配字节数之差除以多出的行数，
+ * 得到每行的边际分配，连接的建立和 Buffer 的创建、扩容不计入。{@link BioHandlerBenchmark} 用 -prof gc 给出分摊后的数字
+ */
+public class BioHandlerAllocationCheck {
+
+    private static final int LINES = 1024;
+
+    private static final int WARMUP_ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        boolean failed = false;
+        for (String unit : new String[]{"abcdefgh", "你好abc"}) {
+            for (int lineLength : new int[]{32, 4096}) {
+                final BioHandlerBenchmark.InMemorySocket shorter = socket(unit, lineLength, LINES);
+                final BioHandlerBenchmark.InMemorySocket longer = socket(unit, lineLength, 2 * LINES);
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    run(shorter);
+                    run(longer);
+                }
+                final long threadId = Thread.currentThread().getId();
+                final long before = threads.getThreadAllocatedBytes(threadId);
+                run(shorter);
+                final long middle = threads.getThreadAllocatedBytes(threadId);
+                run(longer);
+                final long after = threads.getThreadAllocatedBytes(threadId);
+                final double perLine = (double) ((after - middle) - (middle - before)) / LINES;
+                final boolean ok = perLine < 1;
+                failed |= !ok;
+                System.out.printf(Locale.ROOT, "unit=%s lineLength=%d allocated=%.2f B/line %s%n",
+                    unit, lineLength, perLine, ok ? "ok" : "FAILED");
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static BioHandlerBenchmark.InMemorySocket socket(String unit, int lineLength, int lines) {
+        return new BioHandlerBenchmark.InMemorySocket(Lines.input(Lines.repeat(unit, lineLength), lines));
+    }
+
+    private static void run(BioHandlerBenchmark.InMemorySocket socket) {
+        socket.reset();
+        new BioHandler(socket).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.cnscarb.reactor.benchmarks;
+
+import com.cnscarb.reactor.bio.BioHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BIO 模式处理一行请求的开销：一次调用处理一个连接上的 {@link #LINES} 行，连接的建立和 Buffer 的创建分摊到每一行。
+ * 配合 -prof gc 确认每行的分配接近 0，包括超过初始 Buffer 大小的长行（扩容只在连接上第一次遇到长行时发生）。
+ * 不分配的检查见 {@link BioHandlerAllocationCheck}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BioHandlerBenchmark {
+
+    /**
+     * 一个连接上发送的行数
+     */
+    private static final int LINES = 1024;
+
+    /**
+     * 每行的长度，不含 \r\n
+     */
+    @Param({"32", "4096"})
+    int lineLength;
+
+    /**
+     * 每行的内容，汉字的大写转换走多字节路径
+     */
+    @Param({"abcdefgh", "你好abc"})
+    String unit;
+
+    private InMemorySocket socket;
+
+    @Setup
+    public void setup() {
+        socket = new InMemorySocket(Lines.input(Lines.repeat(unit, lineLength), LINES));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long connection() {
+        socket.reset();
+        new BioHandler(socket).run();
+        return socket.out.written;
+    }
+
+    /**
+     * 从内存中读取输入、丢弃输出的 Socket，可以反复使用
+     */
+    static final class InMemorySocket extends Socket {
+
+        private final ByteArrayInputStream in;
+
+        private final CountingOutputStream out = new CountingOutputStream();
+
+        InMemorySocket(byte[] input) {
+            this.in = new ByteArrayInputStream(input);
+        }
+
+        void reset() {
+            in.reset();
+            out.written = 0;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public synchronized void close() {
+        }
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+
+        long written;
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+        }
+    }
+}
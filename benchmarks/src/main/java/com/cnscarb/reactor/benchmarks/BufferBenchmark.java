@@ -0,0 +1,115 @@
+package com.cnscarb.reactor.benchmarks;
+
+import com.cnscarb.reactor.buffer.OutboundBuffer;
+import com.cnscarb.reactor.buffer.PooledBufferAllocator;
+import com.cnscarb.reactor.buffer.WriteBufferWaterMark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer 的借出与归还，以及发送队列写入响应、gathering write 发送的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferBenchmark {
+
+    @Param({"1024", "8192", "65536"})
+    int size;
+
+    /**
+     * 一次发送前写入的响应数，超过一个 Buffer 时走 gathering write
+     */
+    @Param({"1", "64"})
+    int responses;
+
+    private static final int RESPONSE_LENGTH = 64;
+
+    private final PooledBufferAllocator allocator = new PooledBufferAllocator();
+
+    private final DiscardChannel channel = new DiscardChannel();
+
+    private OutboundBuffer outbound;
+
+    @Setup
+    public void setup() {
+        outbound = new OutboundBuffer(allocator, size, WriteBufferWaterMark.DEFAULT);
+    }
+
+    @Benchmark
+    public int pooledAllocateRelease() {
+        final ByteBuffer buffer = allocator.allocate(size);
+        final int capacity = buffer.capacity();
+        allocator.release(buffer);
+        return capacity;
+    }
+
+    /**
+     * 对照组：每次分配新的堆内存 Buffer，由 GC 回收
+     */
+    @Benchmark
+    public ByteBuffer heapAllocate() {
+        return ByteBuffer.allocate(size);
+    }
+
+    @Benchmark
+    public boolean outboundWriteAndFlush() throws IOException {
+        for (int i = 0; i < responses; i++) {
+            final ByteBuffer tail = outbound.tail(RESPONSE_LENGTH);
+            tail.position(tail.position() + RESPONSE_LENGTH);
+        }
+        return outbound.flush(channel);
+    }
+
+    /**
+     * 丢弃所有写入数据的 Channel，总是一次写完
+     */
+    private static final class DiscardChannel implements GatheringByteChannel {
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            final int remaining = src.remaining();
+            src.position(src.limit());
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.cnscarb.reactor.benchmarks;
+
+import com.cnscarb.reactor.codec.LineFrameDecoder;
+import com.cnscarb.reactor.codec.TooLongFrameException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行分隔帧解码：一次读取中包含多个流水线发送的帧，以及一个帧分多次读取到达时的增量扫描
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineFrameDecoderBenchmark {
+
+    /**
+     * 一次读取中的帧数
+     */
+    @Param({"1", "16", "64"})
+    int linesPerRead;
+
+    /**
+     * 每个帧的长度，不含 \r\n
+     */
+    @Param({"32", "512"})
+    int lineLength;
+
+    /**
+     * 一个帧分成几次读取到达
+     */
+    private static final int SEGMENTS = 8;
+
+    private final LineFrameDecoder decoder = new LineFrameDecoder(1023);
+
+    private ByteBuffer pipelined;
+
+    private ByteBuffer fragmented;
+
+    @Setup
+    public void setup() {
+        final byte[] line = Lines.repeat("abcdefgh", lineLength);
+        pipelined = ByteBuffer.allocateDirect((line.length + 2) * linesPerRead);
+        for (int i = 0; i < linesPerRead; i++) {
+            pipelined.put(line).put((byte) '\r').put((byte) '\n');
+        }
+        pipelined.flip();
+        fragmented = ByteBuffer.allocateDirect(line.length + 2).put(line).put((byte) '\r').put((byte) '\n').flip();
+    }
+
+    /**
+     * 取出一次读取中的所有帧
+     */
+    @Benchmark
+    public int pipelined() throws TooLongFrameException {
+        pipelined.position(0);
+        int frames = 0;
+        int delimiter;
+        while ((delimiter = decoder.findDelimiter(pipelined)) >= 0) {
+            frames += LineFrameDecoder.frameEnd(pipelined, delimiter);
+            pipelined.position(delimiter + 1);
+        }
+        return frames;
+    }
+
+    /**
+     * 一个帧分 {@link #SEGMENTS} 次到达，每次到达后查找一次，已经扫描过的字节不重复扫描
+     */
+    @Benchmark
+    public int fragmented() throws TooLongFrameException {
+        final int length = fragmented.capacity();
+        fragmented.position(0);
+        int delimiter = -1;
+        for (int i = 1; i <= SEGMENTS && delimiter < 0; i++) {
+            fragmented.limit(i == SEGMENTS ? length : length * i / SEGMENTS);
+            delimiter = decoder.findDelimiter(fragmented);
+        }
+        return delimiter;
+    }
+}
@@ -0,0 +1,41 @@
+package com.cnscarb.reactor.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 构造测试输入
+ */
+final class Lines {
+
+    private Lines() {
+    }
+
+    /**
+     * 重复 unit 直到 UTF-8 编码后不少于 length 字节，再按字符边界截断到不超过 length 字节，不含换行符
+     */
+    static byte[] repeat(String unit, int length) {
+        final StringBuilder sb = new StringBuilder();
+        while (sb.toString().getBytes(StandardCharsets.UTF_8).length < length) {
+            sb.append(unit);
+        }
+        String line = sb.toString();
+        while (line.getBytes(StandardCharsets.UTF_8).length > length) {
+            line = line.substring(0, line.length() - 1);
+        }
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把 line 重复 lines 次，每行以 \r\n 结尾
+     */
+    static byte[] input(byte[] line, int lines) {
+        final byte[] input = new byte[(line.length + 2) * lines];
+        for (int i = 0; i < lines; i++) {
+            final int offset = (line.length + 2) * i;
+            System.arraycopy(line, 0, input, offset, line.length);
+            input[offset + line.length] = '\r';
+            input[offset + line.length + 1] = '\n';
+        }
+        return input;
+    }
+}
@@ -0,0 +1,74 @@
+package com.cnscarb.reactor.benchmarks;
+
+import com.cnscarb.reactor.reactor.Reactor;
+import com.cnscarb.reactor.reactor.ReactorChooser;
+import com.cnscarb.reactor.reactor.ReactorChoosers;
+import com.cnscarb.reactor.reactor.ReactorGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 选择 Sub Reactor 的开销：单线程，以及多个 Acceptor 线程（SO_REUSEPORT 模式）同时选择时的竞争
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReactorChooserBenchmark {
+
+    @Param({"ROUND_ROBIN", "LEAST_CONNECTIONS", "POWER_OF_TWO_CHOICES"})
+    String chooser;
+
+    /**
+     * Reactor 数，6 不是 2 的幂，轮询时走取模分支
+     */
+    @Param({"4", "6", "16"})
+    int reactors;
+
+    private ReactorGroup group;
+
+    @Setup
+    public void setup() {
+        final ReactorChooser.Factory factory;
+        switch (chooser) {
+            case "ROUND_ROBIN":
+                factory = ReactorChoosers.ROUND_ROBIN;
+                break;
+            case "LEAST_CONNECTIONS":
+                factory = ReactorChoosers.LEAST_CONNECTIONS;
+                break;
+            case "POWER_OF_TWO_CHOICES":
+                factory = ReactorChoosers.POWER_OF_TWO_CHOICES;
+                break;
+            default:
+                throw new IllegalArgumentException(chooser);
+        }
+        // 只打开 Selector，不启动 Reactor 线程
+        group = new ReactorGroup(reactors, factory);
+    }
+
+    @Benchmark
+    public Reactor next() {
+        return group.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Reactor nextContended() {
+        return group.next();
+    }
+}
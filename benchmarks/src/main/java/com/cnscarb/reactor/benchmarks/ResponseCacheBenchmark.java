@@ -0,0 +1,70 @@
+package com.cnscarb.reactor.benchmarks;
+
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+import com.cnscarb.reactor.reactor.ReactorMetrics;
+import com.cnscarb.reactor.reactor.ResponseCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应缓存：命中时查找并复制响应，与每次重新做大写转换的耗时对比
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    /**
+     * 一行的字节数
+     */
+    @Param({"16", "128"})
+    int lineLength;
+
+    private ByteBuffer in;
+
+    private ByteBuffer out;
+
+    private ResponseCache cache;
+
+    @Setup
+    public void setup() {
+        final byte[] bytes = Lines.repeat("héllo wörld ", lineLength);
+        in = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        out = ByteBuffer.allocateDirect(bytes.length * UpperCaseCodec.MAX_EXPANSION);
+        cache = new ResponseCache(1024, 1024, new ReactorMetrics());
+        UpperCaseCodec.encode(in, out);
+        out.flip();
+        cache.put(ResponseCache.hash(in, 0, bytes.length), in, 0, bytes.length, out, 0, out.remaining());
+    }
+
+    @Benchmark
+    public boolean encode() {
+        in.position(0);
+        out.clear();
+        return UpperCaseCodec.encode(in, out);
+    }
+
+    @Benchmark
+    public int cacheHit() {
+        in.position(0);
+        out.clear();
+        final int slot = cache.get(ResponseCache.hash(in, 0, in.limit()), in);
+        cache.copyResponse(slot, out);
+        return slot;
+    }
+}
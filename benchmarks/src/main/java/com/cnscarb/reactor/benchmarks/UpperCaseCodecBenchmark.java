@@ -0,0 +1,86 @@
+package com.cnscarb.reactor.benchmarks;
+
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大写转换编解码器：不同行长度、不同字符集下 {@link UpperCaseCodec#encode(ByteBuffer, ByteBuffer)} 的耗时，
+ * 与先解码成 String 再 toUpperCase 的做法对比。配合 -prof gc 查看每次操作分配的字节数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpperCaseCodecBenchmark {
+
+    /**
+     * 一行的字节数
+     */
+    @Param({"16", "128", "1000"})
+    int lineLength;
+
+    /**
+     * ASCII 走 SWAR 快速路径，LATIN1 是 2 字节 UTF-8 字符，CJK 是 3 字节 UTF-8 字符
+     */
+    @Param({"ASCII", "LATIN1", "CJK"})
+    String charset;
+
+    private byte[] bytes;
+
+    private ByteBuffer in;
+
+    private ByteBuffer out;
+
+    @Setup
+    public void setup() {
+        final String unit;
+        switch (charset) {
+            case "ASCII":
+                unit = "hello world ";
+                break;
+            case "LATIN1":
+                unit = "héllo wörld ";
+                break;
+            case "CJK":
+                unit = "你好世界 abc ";
+                break;
+            default:
+                throw new IllegalArgumentException(charset);
+        }
+        bytes = Lines.repeat(unit, lineLength);
+        in = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        out = ByteBuffer.allocateDirect(bytes.length * UpperCaseCodec.MAX_EXPANSION);
+    }
+
+    @Benchmark
+    public boolean encode() {
+        in.position(0);
+        out.clear();
+        return UpperCaseCodec.encode(in, out);
+    }
+
+    /**
+     * 对照组：解码成 String、转换、再编码回字节数组
+     */
+    @Benchmark
+    public byte[] stringToUpperCase() {
+        return new String(bytes, StandardCharsets.UTF_8).toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+}
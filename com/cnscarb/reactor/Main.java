@@ -1,13 +1,19 @@
 package com.cnscarb.reactor;
 
 import com.cnscarb.reactor.bio.BioServer;
+import com.cnscarb.reactor.journal.Journal;
+import com.cnscarb.reactor.reactor.DatagramBootstrap;
 import com.cnscarb.reactor.reactor.MultiReactorBootstrap;
 import com.cnscarb.reactor.reactor.NioHandler;
+import com.cnscarb.reactor.reactor.PipelineNioHandler;
 import com.cnscarb.reactor.reactor.MultiThreadNioHandler;
 import com.cnscarb.reactor.reactor.Reactor;
 import com.cnscarb.reactor.reactor.ReactorGroup;
+import com.cnscarb.reactor.reactor.StreamingNioHandler;
 
 import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -15,10 +21,21 @@ public class Main {
 
     public static final int PORT = 8080;
 
+    public static final String SOCKET_PATH = "/tmp/reactor.sock";
+
     public static void main(String[] args) throws IOException {
         // runBioServer();
+        // runVirtualThreadBioServer();
         // runSingleThreadReactor();
         // runMultiThreadReactor();
+        // runStreamingReactor();
+        // runPipelineReactor();
+        // runReusePortReactor();
+        // runLowFootprintReactor();
+        // runUnixDomainSocketReactor();
+        // runDatagramReactor();
+        // runJournaledMultiReactor();
+        // runCachedMultiReactor();
         runMultiReactor();
         System.out.println("Server started on port " + PORT);
     }
@@ -31,15 +48,38 @@ public class Main {
         mainThread.shutdown();
     }
 
+    public static void runVirtualThreadBioServer() {
+        // 每个连接一个虚拟线程，最多同时处理 100000 个连接，需要 JDK 21+
+        final BioServer bioServer = new BioServer(PORT, true, 100_000);
+
+        ExecutorService mainThread = Executors.newSingleThreadExecutor();
+        mainThread.submit(bioServer);
+        mainThread.shutdown();
+    }
+
     public static void runSingleThreadReactor() throws IOException {
-        final Reactor reactor = new Reactor(PORT, NioHandler.class);
+        final Reactor reactor = new Reactor(PORT, NioHandler::new);
 
         reactor.startThread();
         reactor.executor.shutdown();
     }
 
     public static void runMultiThreadReactor() throws IOException {
-        final Reactor reactor = new Reactor(PORT, MultiThreadNioHandler.class);
+        final Reactor reactor = new Reactor(PORT, MultiThreadNioHandler::new);
+
+        reactor.startThread();
+        reactor.executor.shutdown();
+    }
+
+    public static void runStreamingReactor() throws IOException {
+        final Reactor reactor = new Reactor(PORT, StreamingNioHandler::new);
+
+        reactor.startThread();
+        reactor.executor.shutdown();
+    }
+
+    public static void runPipelineReactor() throws IOException {
+        final Reactor reactor = new Reactor(PORT, PipelineNioHandler.factory(PipelineNioHandler.UPPER_CASE));
 
         reactor.startThread();
         reactor.executor.shutdown();
@@ -48,6 +88,54 @@ public class Main {
     public static void runMultiReactor() throws IOException {
         ReactorGroup mainReactorGroup = new ReactorGroup(1);
         ReactorGroup subReactorGroup = new ReactorGroup(4);
-        new MultiReactorBootstrap(PORT, mainReactorGroup, subReactorGroup, NioHandler.class);
+        new MultiReactorBootstrap(PORT, mainReactorGroup, subReactorGroup, NioHandler::new);
+    }
+
+    public static void runLowFootprintReactor() throws IOException {
+        // 大量空闲长连接：输入 Buffer 只在读取期间借出，Handler 关闭后回收复用
+        ReactorGroup mainReactorGroup = new ReactorGroup(1);
+        ReactorGroup subReactorGroup = new ReactorGroup(4);
+        new MultiReactorBootstrap(PORT, mainReactorGroup, subReactorGroup, NioHandler.RECYCLING);
+    }
+
+    public static void runUnixDomainSocketReactor() throws IOException {
+        // 同一主机上的客户端（例如 sidecar）通过 Unix 域套接字连接，不经过 TCP/IP 协议栈，需要 JDK 16+
+        ReactorGroup mainReactorGroup = new ReactorGroup(1);
+        ReactorGroup subReactorGroup = new ReactorGroup(4);
+        new MultiReactorBootstrap(UnixDomainSocketAddress.of(SOCKET_PATH), mainReactorGroup, subReactorGroup, NioHandler::new);
+    }
+
+    public static void runDatagramReactor() throws IOException {
+        // 无连接的 UDP 模式，每个数据报一个请求；4 个 Reactor 各自绑定一个 SO_REUSEPORT 的 DatagramChannel
+        ReactorGroup reactorGroup = new ReactorGroup(4);
+        new DatagramBootstrap(reactorGroup)
+            .reusePort(true)
+            .bind(PORT);
+    }
+
+    public static void runReusePortReactor() throws IOException {
+        ReactorGroup reactorGroup = new ReactorGroup(4);
+        new MultiReactorBootstrap(reactorGroup, reactorGroup, NioHandler::new)
+            .reusePort(true)
+            .acceptorHandlesIo(true)
+            .bind(PORT);
+    }
+
+    public static void runCachedMultiReactor() throws IOException {
+        // 每个 Sub Reactor 缓存 4096 个热点请求的响应，每个条目最多 512 字节，共占用 4 * 2 MB 直接内存
+        ReactorGroup mainReactorGroup = new ReactorGroup(1);
+        ReactorGroup subReactorGroup = new ReactorGroup(4).responseCache(4096, 512);
+        new MultiReactorBootstrap(PORT, mainReactorGroup, subReactorGroup, NioHandler::new);
+    }
+
+    public static void runJournaledMultiReactor() throws IOException {
+        // 每个请求和响应写入 journal 目录下的段文件，最多保留 16 个，用 JournalReader 查看
+        final Journal journal = new Journal(Path.of("journal"))
+            .maxSegments(16)
+            .start();
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+        ReactorGroup mainReactorGroup = new ReactorGroup(1);
+        ReactorGroup subReactorGroup = new ReactorGroup(4).journal(journal);
+        new MultiReactorBootstrap(PORT, mainReactorGroup, subReactorGroup, NioHandler::new);
     }
 }
@@ -1,41 +1,115 @@
 package com.cnscarb.reactor.bio;
 
-import java.io.BufferedReader;
+import com.cnscarb.reactor.codec.LineFrameDecoder;
+import com.cnscarb.reactor.codec.TooLongFrameException;
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+import com.cnscarb.reactor.journal.Journal;
+
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Locale;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * 处理单个客户端连接的具体逻辑
+ * <p>
+ * 阻塞的读写都不在 synchronized 中进行，运行在虚拟线程上时不会钉住载体线程
  */
 public class BioHandler implements Runnable {
 
+    /**
+     * 输入、输出 Buffer 的初始大小。遇到更长的行或者更长的响应时按需扩容，之后一直复用
+     */
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /**
+     * 一行的最大长度（不含 \n），默认 64 KB。与 NIO 模式一样限制行长，超过时关闭连接，
+     * 一直不发送换行符的客户端不会让累积 Buffer 无限增长
+     */
+    static final int MAX_LINE_LENGTH = Math.min(Integer.getInteger("reactor.bio.maxLineLength", 64 * 1024),
+        (Integer.MAX_VALUE - 64) / UpperCaseCodec.MAX_EXPANSION);
+
+    /**
+     * 累积 Buffer 的最大容量：一行最长的内容加上 \n
+     */
+    private static final int MAX_INPUT_BUFFER_SIZE = MAX_LINE_LENGTH + 1;
+
+    private static final byte[] PROMPT = "bio> ".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] NEWLINE = "\r\n".getBytes(StandardCharsets.UTF_8);
+
     public Socket socket;
 
+    /**
+     * 请求日志，null 表示不记录
+     */
+    private final Journal journal;
+
+    private final long connectionId;
+
+    /**
+     * 最近一次读到数据的时间，请求日志中的耗时从这里算起
+     */
+    private long lastReadNanos;
+
+    /**
+     * 累积 Buffer，保存读到的输入，可能包含多行和半行
+     */
+    private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    /**
+     * 一次读取中所有行的响应，读完一批后一次写出
+     */
+    private ByteBuffer output = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
     public BioHandler(Socket socket) {
+        this(socket, null, 0);
+    }
+
+    /**
+     * 每行请求和它的响应（包括换行符和提示符）追加一条记录到请求日志，连接编号见 {@link Journal#BIO_REACTOR_ID}
+     */
+    public BioHandler(Socket socket, Journal journal, long connectionId) {
         this.socket = socket;
+        this.journal = journal;
+        this.connectionId = connectionId;
     }
 
     @Override
     public void run() {
-        System.out.println("New client connected");
+        // 与 NIO 模式共用行分隔帧解码器和大写转换编解码器，直接处理字节，不构造 String。
+        // 与 readLine 一样只按 \n 分行，ctrl+c 作为普通字符处理。行超过 MAX_LINE_LENGTH 时抛出 TooLongFrameException，关闭连接
+        final LineFrameDecoder frameDecoder = new LineFrameDecoder(MAX_LINE_LENGTH, false);
         try (
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            final PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+            final InputStream in = socket.getInputStream();
+            final OutputStream out = socket.getOutputStream();
         ) {
-            writer.print("bio> ");
-            writer.flush();
-            String input;
-            // 读取客户端输入的一行内容
-            while ((input = reader.readLine()) != null) {
-                // 处理客户端输入的内容
-                final String output = process(input);
-                // 将处理后的内容写回给客户端
-                writer.println(output);
-                writer.print("bio> ");
-                writer.flush();
+            out.write(PROMPT);
+            out.flush();
+            // 读取客户端输入，可能包含多行
+            while (true) {
+                ensureWritable();
+                final int n = in.read(input.array(), input.position(), input.remaining());
+                if (n == -1) {
+                    break;
+                }
+                if (journal != null) {
+                    lastReadNanos = System.nanoTime();
+                }
+                input.position(input.position() + n);
+                input.flip();
+                int delimiter;
+                while ((delimiter = frameDecoder.findDelimiter(input)) >= 0) {
+                    // 处理客户端输入的一行内容，将处理后的内容写回给客户端
+                    final int limit = input.limit();
+                    input.limit(LineFrameDecoder.frameEnd(input, delimiter));
+                    process(input, out);
+                    input.limit(limit).position(delimiter + 1);
+                }
+                input.compact();
+                flush(out);
             }
         } catch (IOException e) {
             System.out.println("Error handling io: " + e.getMessage());
@@ -49,9 +123,60 @@ public class BioHandler implements Runnable {
     }
 
     /**
-     * 将客户端输入的内容转换为大写
+     * 累积 Buffer 已满（一行还没读完）时扩容为两倍，最多 {@link #MAX_INPUT_BUFFER_SIZE}。
+     * 达到最大容量仍然放不下一行之前，帧解码器已经抛出 TooLongFrameException
      */
-    private String process(String requestContent) {
-        return requestContent.toUpperCase(Locale.ROOT);
+    private void ensureWritable() {
+        if (!input.hasRemaining()) {
+            input = grow(input, (int) Math.min(input.capacity() * 2L, MAX_INPUT_BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * 将客户端输入的一行内容转换为大写，连同提示符写入 output。
+     * 先保证剩余空间能放下最长的响应：不够时先发送已有的响应，仍然不够再扩容
+     */
+    private void process(ByteBuffer frame, OutputStream out) throws IOException {
+        // 行长有上限，MAX_LINE_LENGTH 保证这里不会溢出
+        final int maxResponseLength = frame.remaining() * UpperCaseCodec.MAX_EXPANSION + NEWLINE.length + PROMPT.length;
+        if (output.remaining() < maxResponseLength) {
+            flush(out);
+            if (output.capacity() < maxResponseLength) {
+                output = ByteBuffer.allocate(maxResponseLength);
+            }
+        }
+        final int start = frame.position();
+        final int responseStart = output.position();
+        if (!tryProcess(frame, output)) {
+            throw new TooLongFrameException("response exceeds " + maxResponseLength);
+        }
+        if (journal != null) {
+            journal.append(connectionId, System.nanoTime() - lastReadNanos,
+                frame, start, frame.position() - start, output, responseStart, output.position() - responseStart);
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        return ByteBuffer.allocate(capacity).put(buffer.flip());
+    }
+
+    private boolean tryProcess(ByteBuffer frame, ByteBuffer output) {
+        final int frameMark = frame.position();
+        final int mark = output.position();
+        if (!UpperCaseCodec.encode(frame, output) || output.remaining() < NEWLINE.length + PROMPT.length) {
+            frame.position(frameMark);
+            output.position(mark);
+            return false;
+        }
+        output.put(NEWLINE).put(PROMPT);
+        return true;
+    }
+
+    private void flush(OutputStream out) throws IOException {
+        if (output.position() > 0) {
+            out.write(output.array(), 0, output.position());
+            out.flush();
+            output.clear();
+        }
     }
 }
@@ -1,30 +1,128 @@
 package com.cnscarb.reactor.bio;
 
+import com.cnscarb.reactor.journal.Journal;
+
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 public class BioServer implements Runnable {
     public int port;
 
+    /**
+     * 使用虚拟线程时，每个连接一个虚拟线程的 Executor；否则为 null，每个连接创建一个平台线程。
+     * 虚拟线程阻塞在 IO 上时会让出载体线程，每个连接一个线程也能支撑大量连接
+     */
+    private final ExecutorService executor;
+
+    /**
+     * 同时处理的连接数上限，达到上限后暂停 accept，新连接在内核的监听队列中等待
+     */
+    private final Semaphore permits;
+
+    /**
+     * 请求日志，null 表示不记录，只对之后建立的连接生效
+     */
+    private volatile Journal journal;
+
+    /**
+     * 连接序号，请求日志中区分不同的连接，只在 accept 线程中访问
+     */
+    private long connectionSequence;
+
+    /**
+     * 是否不打印监听端口，例如压测时避免输出混进结果
+     */
+    private boolean quiet;
+
     public BioServer(int port) {
+        this(port, false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException 使用虚拟线程但当前 JDK 不支持时抛出
+     */
+    public BioServer(int port, boolean virtualThreads, int maxConnections) {
         this.port = port;
+        this.executor = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.permits = new Semaphore(maxConnections);
+    }
+
+    /**
+     * 启动时不打印监听端口，在 {@link #run()} 之前设置
+     */
+    public BioServer quiet(boolean quiet) {
+        this.quiet = quiet;
+        return this;
+    }
+
+    /**
+     * 把每行请求和响应记录到请求日志，null 表示不记录
+     */
+    public BioServer journal(Journal journal) {
+        this.journal = journal;
+        return this;
     }
 
     @Override
     public void run() {
         try (final ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("Server is listening on port " + port);
+            if (!quiet) {
+                System.out.println("Server is listening on port " + port);
+            }
             while (!Thread.interrupted()) {
+                permits.acquire();
+                final Socket socket;
                 try {
                     // 当有新的客户端连接时，accept() 方法会返回一个Socket对象，表示与客户端的连接
-                    // 创建一个新的线程来处理该连接
-                    new Thread(new BioHandler(serverSocket.accept())).start();
+                    socket = serverSocket.accept();
                 } catch (IOException e) {
+                    permits.release();
                     System.out.println("Error handling client: " + e.getMessage());
+                    continue;
+                }
+                final Journal journal = this.journal;
+                final long connectionId = (long) Journal.BIO_REACTOR_ID << 40 | ++connectionSequence;
+                final Runnable handler = () -> {
+                    try {
+                        new BioHandler(socket, journal, connectionId).run();
+                    } finally {
+                        permits.release();
+                    }
+                };
+                if (executor != null) {
+                    executor.execute(handler);
+                } else {
+                    // 创建一个新的线程来处理该连接
+                    new Thread(handler).start();
                 }
             }
         } catch (IOException e) {
             System.out.println("Server exception: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 通过反射调用 JDK 21 的 Executors.newVirtualThreadPerTaskExecutor()，在更低版本的 JDK 上也能编译
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new UnsupportedOperationException("virtual threads require JDK 21+", e);
+        } catch (InvocationTargetException e) {
+            // JDK 19、20 未开启 --enable-preview
+            throw new UnsupportedOperationException("virtual threads are not enabled", e.getCause());
         }
     }
 }
@@ -0,0 +1,250 @@
+package com.cnscarb.reactor.buffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+
+/**
+ * 连接的待发送数据队列
+ * <p>
+ * 响应写入队尾的池化 Buffer 中，写满后再借一个新的追加到队列。发送时把队列中的多个 Buffer 通过一次
+ * {@link GatheringByteChannel#write(ByteBuffer[], int, int)} 写出，没有写完的部分保留在队列中，等待下次发送。
+ * <p>
+ * 只读 Buffer（例如共享提示符的 duplicate）也可以直接加入队列，它们不属于分配器，发送完成后不归还
+ * <p>
+ * 根据 {@link WriteBufferWaterMark} 跟踪可写状态，待发送字节数超过高水位线后变为不可写，降到低水位线以下恢复可写
+ * <p>
+ * 只在 Reactor 线程中使用，不做同步
+ */
+public class OutboundBuffer {
+
+    /**
+     * 一次发送最多尝试写入的次数，避免一个连接长时间占用 Reactor 线程
+     */
+    public static final int WRITE_SPIN_COUNT = 16;
+
+    /**
+     * 一次 gathering write 最多合并的 Buffer 数量
+     */
+    private static final int MAX_IO_VECTORS = 64;
+
+    /**
+     * gathering write 使用的 Buffer 数组，同一线程中的所有连接复用
+     */
+    private static final ThreadLocal<ByteBuffer[]> IO_VECTORS = ThreadLocal.withInitial(() -> new ByteBuffer[MAX_IO_VECTORS]);
+
+    private final PooledBufferAllocator allocator;
+
+    private final WriteBufferWaterMark waterMark;
+
+    /**
+     * 默认借出的 Buffer 大小
+     */
+    private final int pageSize;
+
+    /**
+     * 已经写入完成、等待发送的 Buffer（读模式）。大多数连接的响应一次就能写完，用不到队列，第一次需要时才创建
+     */
+    private ArrayDeque<ByteBuffer> queue;
+
+    /**
+     * 正在写入的队尾 Buffer（写模式），发送前才加入队列
+     */
+    private ByteBuffer tail;
+
+    /**
+     * 待发送的字节数
+     */
+    private long pendingBytes;
+
+    /**
+     * 是否可写
+     */
+    private boolean writable = true;
+
+    public OutboundBuffer(PooledBufferAllocator allocator, int pageSize, WriteBufferWaterMark waterMark) {
+        this.allocator = allocator;
+        this.pageSize = pageSize;
+        this.waterMark = waterMark;
+    }
+
+    /**
+     * 返回一个至少还能写入 minWritable 字节的队尾 Buffer，调用方写入后无需再做其他操作
+     */
+    public ByteBuffer tail(int minWritable) {
+        if (tail != null && tail.remaining() >= minWritable) {
+            return tail;
+        }
+        sealTail();
+        tail = allocator.allocate(Math.max(pageSize, minWritable));
+        return tail;
+    }
+
+    /**
+     * 将一个只读 Buffer 追加到队列，它的内容在之前写入的数据之后发送
+     */
+    public void add(ByteBuffer readOnly) {
+        sealTail();
+        queue().add(readOnly);
+        pendingBytes += readOnly.remaining();
+    }
+
+    /**
+     * 结束队尾 Buffer 的写入，切换成读模式加入队列
+     */
+    private void sealTail() {
+        if (tail == null) {
+            return;
+        }
+        if (tail.position() == 0) {
+            allocator.release(tail);
+        } else {
+            tail.flip();
+            pendingBytes += tail.remaining();
+            queue().add(tail);
+        }
+        tail = null;
+    }
+
+    private ArrayDeque<ByteBuffer> queue() {
+        if (queue == null) {
+            queue = new ArrayDeque<>(4);
+        }
+        return queue;
+    }
+
+    private boolean queueIsEmpty() {
+        return queue == null || queue.isEmpty();
+    }
+
+    /**
+     * 是否还有待发送的数据
+     */
+    public boolean isEmpty() {
+        return queueIsEmpty() && (tail == null || tail.position() == 0);
+    }
+
+    /**
+     * 待发送的字节数，包括正在写入的队尾 Buffer
+     */
+    public long pendingBytes() {
+        return pendingBytes + (tail == null ? 0 : tail.position());
+    }
+
+    /**
+     * 待发送字节数是否低于高水位线，不可写时调用方应暂停产生新的响应
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * 根据当前待发送字节数更新可写状态。写入响应或发送之后调用
+     *
+     * @return 可写状态发生变化时返回 true
+     */
+    public boolean updateWritability() {
+        final long pending = pendingBytes();
+        if (writable && pending > waterMark.high()) {
+            writable = false;
+            return true;
+        }
+        if (!writable && pending < waterMark.low()) {
+            writable = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 使用 gathering write 发送队列中的数据，最多尝试 {@link #WRITE_SPIN_COUNT} 次
+     *
+     * @return 全部发送完成返回 true；socket 发送缓冲区已满或达到尝试次数返回 false，调用方应关注 OP_WRITE 事件
+     */
+    public boolean flush(GatheringByteChannel channel) throws IOException {
+        if (queueIsEmpty()) {
+            return flushTail(channel);
+        }
+        sealTail();
+        final ByteBuffer[] vectors = IO_VECTORS.get();
+        for (int spin = 0; spin < WRITE_SPIN_COUNT && !queue.isEmpty(); spin++) {
+            int count = 0;
+            for (ByteBuffer buffer : queue) {
+                vectors[count++] = buffer;
+                if (count == MAX_IO_VECTORS) {
+                    break;
+                }
+            }
+            final long written = count == 1 ? channel.write(vectors[0]) : channel.write(vectors, 0, count);
+            for (int i = 0; i < count; i++) {
+                vectors[i] = null;
+            }
+            if (written == 0) {
+                // socket 发送缓冲区已满
+                return false;
+            }
+            pendingBytes -= written;
+            removeWritten();
+        }
+        return queue.isEmpty();
+    }
+
+    /**
+     * 只有队尾 Buffer 时直接写出，不经过队列，也不用 gathering write。没有写完才加入队列
+     */
+    private boolean flushTail(GatheringByteChannel channel) throws IOException {
+        if (tail == null) {
+            return true;
+        }
+        final ByteBuffer buffer = tail;
+        tail = null;
+        buffer.flip();
+        for (int spin = 0; spin < WRITE_SPIN_COUNT && buffer.hasRemaining(); spin++) {
+            if (channel.write(buffer) == 0) {
+                // socket 发送缓冲区已满
+                break;
+            }
+        }
+        if (!buffer.hasRemaining()) {
+            allocator.release(buffer);
+            return true;
+        }
+        pendingBytes += buffer.remaining();
+        queue().add(buffer);
+        return false;
+    }
+
+    /**
+     * 移除已经全部写出的 Buffer，归还池化 Buffer
+     */
+    private void removeWritten() {
+        ByteBuffer buffer;
+        while ((buffer = queue.peek()) != null && !buffer.hasRemaining()) {
+            queue.poll();
+            release(buffer);
+        }
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (!buffer.isReadOnly()) {
+            allocator.release(buffer);
+        }
+    }
+
+    /**
+     * 丢弃所有待发送的数据并归还 Buffer，连接关闭时调用。之后可以继续复用
+     */
+    public void releaseAll() {
+        if (tail != null) {
+            allocator.release(tail);
+            tail = null;
+        }
+        ByteBuffer buffer;
+        while (queue != null && (buffer = queue.poll()) != null) {
+            release(buffer);
+        }
+        pendingBytes = 0;
+        writable = true;
+    }
+}
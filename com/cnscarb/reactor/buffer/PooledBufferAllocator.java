@@ -0,0 +1,193 @@
+package com.cnscarb.reactor.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 池化的直接内存 ByteBuffer 分配器
+ * <p>
+ * 直接内存 Buffer 在 socket 读写时无需像堆内存 Buffer 那样先拷贝到 JDK 内部的临时直接内存 Buffer 中。
+ * 但直接内存的申请和释放代价很高，所以按大小分级，每一级从一块较大的直接内存（Chunk）中切分出固定大小的页，释放后放回空闲列表复用。
+ * <p>
+ * 每个 Reactor 持有一个分配器，只在 Reactor 线程中使用，因此不做同步
+ */
+public class PooledBufferAllocator {
+
+    /**
+     * 最小页大小 1KB
+     */
+    private static final int MIN_PAGE_SHIFT = 10;
+
+    /**
+     * 最大页大小 64KB，超过的请求不池化，直接分配
+     */
+    private static final int MAX_PAGE_SHIFT = 16;
+
+    /**
+     * 每次向系统申请的 Chunk 大小
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * 是否开启泄漏检测，开启后会记录每个未归还 Buffer 的分配调用栈
+     */
+    private static final boolean LEAK_DETECTION = Boolean.getBoolean("reactor.buffer.leakDetection");
+
+    private final SizeClass[] sizeClasses = new SizeClass[MAX_PAGE_SHIFT - MIN_PAGE_SHIFT + 1];
+
+    /**
+     * 未归还的 Buffer 及其分配调用栈，仅在开启泄漏检测时使用
+     */
+    private final Map<ByteBuffer, Throwable> leases = LEAK_DETECTION ? new IdentityHashMap<>() : null;
+
+    /**
+     * 统计信息
+     */
+    private long allocations;
+    private long releases;
+    private long unpooledAllocations;
+    private long chunkBytes;
+    private long leasedBytes;
+
+    public PooledBufferAllocator() {
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new SizeClass(1 << (MIN_PAGE_SHIFT + i));
+        }
+    }
+
+    /**
+     * 分配一个容量不小于 capacity 的直接内存 Buffer，使用完后必须调用 {@link #release(ByteBuffer)} 归还
+     */
+    public ByteBuffer allocate(int capacity) {
+        allocations++;
+        final int index = sizeClassIndex(capacity);
+        final ByteBuffer buffer;
+        if (index < 0) {
+            // 超过最大页大小，不池化
+            unpooledAllocations++;
+            buffer = ByteBuffer.allocateDirect(capacity);
+        } else {
+            buffer = sizeClasses[index].poll();
+        }
+        leasedBytes += buffer.capacity();
+        if (leases != null) {
+            leases.put(buffer, new Throwable("Buffer allocated here"));
+        }
+        return buffer;
+    }
+
+    /**
+     * 归还 Buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (leases != null && leases.remove(buffer) == null) {
+            throw new IllegalStateException("Buffer released twice or not allocated by this allocator");
+        }
+        releases++;
+        leasedBytes -= buffer.capacity();
+        final int index = sizeClassIndex(buffer.capacity());
+        if (index >= 0 && buffer.isDirect() && sizeClasses[index].pageSize == buffer.capacity()) {
+            buffer.clear();
+            sizeClasses[index].free.push(buffer);
+        }
+    }
+
+    private static int sizeClassIndex(int capacity) {
+        if (capacity > 1 << MAX_PAGE_SHIFT) {
+            return -1;
+        }
+        if (capacity <= 1 << MIN_PAGE_SHIFT) {
+            return 0;
+        }
+        // 向上取整到 2 的幂
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_PAGE_SHIFT;
+    }
+
+    /**
+     * 打印所有未归还 Buffer 的分配调用栈，返回未归还的数量。未开启泄漏检测时只返回数量
+     */
+    public int reportLeaks() {
+        if (leases == null) {
+            return (int) (allocations - releases);
+        }
+        for (Throwable trace : leases.values()) {
+            System.err.println("LEAK: pooled buffer was not released");
+            trace.printStackTrace();
+        }
+        return leases.size();
+    }
+
+    public long allocations() {
+        return allocations;
+    }
+
+    public long releases() {
+        return releases;
+    }
+
+    /**
+     * 当前借出未归还的 Buffer 数量
+     */
+    public long leasedBuffers() {
+        return allocations - releases;
+    }
+
+    /**
+     * 当前借出未归还的字节数
+     */
+    public long leasedBytes() {
+        return leasedBytes;
+    }
+
+    /**
+     * 已向系统申请的池化直接内存总字节数
+     */
+    public long chunkBytes() {
+        return chunkBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "PooledBufferAllocator{allocations=" + allocations
+            + ", releases=" + releases
+            + ", unpooled=" + unpooledAllocations
+            + ", leasedBytes=" + leasedBytes
+            + ", chunkBytes=" + chunkBytes + '}';
+    }
+
+    /**
+     * 一个大小等级，维护该等级的空闲页
+     */
+    private class SizeClass {
+        final int pageSize;
+
+        final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+        SizeClass(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        ByteBuffer poll() {
+            ByteBuffer buffer = free.poll();
+            if (buffer == null) {
+                allocateChunk();
+                buffer = free.poll();
+            }
+            return buffer;
+        }
+
+        /**
+         * 申请一个 Chunk，并切分成页放入空闲列表
+         */
+        private void allocateChunk() {
+            final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            chunkBytes += CHUNK_SIZE;
+            for (int offset = 0; offset < CHUNK_SIZE; offset += pageSize) {
+                chunk.limit(offset + pageSize).position(offset);
+                free.push(chunk.slice());
+            }
+        }
+    }
+}
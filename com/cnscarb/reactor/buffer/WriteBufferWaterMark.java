@@ -0,0 +1,42 @@
+package com.cnscarb.reactor.buffer;
+
+/**
+ * 发送队列的高低水位线
+ * <p>
+ * 待发送字节数超过高水位线时连接变为不可写，处理器应暂停读取客户端请求；降到低水位线以下时恢复可写。
+ * 避免慢客户端让发送队列无限增长
+ */
+public final class WriteBufferWaterMark {
+
+    /**
+     * 默认水位线，可通过系统属性 reactor.writeBufferLowWaterMark 和 reactor.writeBufferHighWaterMark 配置
+     */
+    public static final WriteBufferWaterMark DEFAULT = new WriteBufferWaterMark(
+        Integer.getInteger("reactor.writeBufferLowWaterMark", 32 * 1024),
+        Integer.getInteger("reactor.writeBufferHighWaterMark", 64 * 1024));
+
+    private final int low;
+
+    private final int high;
+
+    public WriteBufferWaterMark(int low, int high) {
+        if (low < 0 || high < low) {
+            throw new IllegalArgumentException("invalid water mark: low=" + low + ", high=" + high);
+        }
+        this.low = low;
+        this.high = high;
+    }
+
+    public int low() {
+        return low;
+    }
+
+    public int high() {
+        return high;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBufferWaterMark{low=" + low + ", high=" + high + '}';
+    }
+}
@@ -0,0 +1,116 @@
+package com.cnscarb.reactor.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 行分隔帧解码器，从累积 Buffer 中切分出以 \n 结尾的帧
+ * <p>
+ * 一次 read 可能读到多个完整的帧（客户端流水线发送），也可能只读到半个帧。
+ * 调用方每次读取后循环调用 {@link #findDelimiter(ByteBuffer)} 取出所有完整的帧，剩余的半个帧留在累积 Buffer 中等待下次读取。
+ * <p>
+ * 默认 ctrl+c（ETX，0x03）同样视为帧结束，由调用方决定如何处理；也可以只按 \n 切分，ETX 作为普通字节
+ */
+public class LineFrameDecoder {
+
+    public static final byte LF = '\n';
+
+    public static final byte CR = '\r';
+
+    public static final byte ETX = 3;
+
+    /**
+     * 帧的最大长度（不含分隔符）
+     */
+    private final int maxFrameLength;
+
+    /**
+     * ETX 是否也是帧分隔符
+     */
+    private final boolean etxDelimiter;
+
+    /**
+     * 上次查找时已扫描过、没有分隔符的字节数（相对于 position），下次从这里继续查找，避免半包重复扫描
+     */
+    private int scannedBytes;
+
+    public LineFrameDecoder(int maxFrameLength) {
+        this(maxFrameLength, true);
+    }
+
+    /**
+     * @param etxDelimiter 为 false 时只按 \n 切分
+     */
+    public LineFrameDecoder(int maxFrameLength, boolean etxDelimiter) {
+        this.maxFrameLength = maxFrameLength;
+        this.etxDelimiter = etxDelimiter;
+    }
+
+    /**
+     * 清除扫描进度，累积 Buffer 被丢弃或者解码器被复用时调用
+     */
+    public void reset() {
+        scannedBytes = 0;
+    }
+
+    /**
+     * 在累积 Buffer（读模式）的 [position, limit) 中查找下一个帧分隔符
+     *
+     * @return 分隔符的绝对索引，没有完整的帧时返回 -1
+     * @throws TooLongFrameException 超过最大帧长度仍未找到分隔符
+     */
+    public int findDelimiter(ByteBuffer cumulation) throws TooLongFrameException {
+        final int start = cumulation.position();
+        final int limit = cumulation.limit();
+        final int delimiter = etxDelimiter
+            ? indexOf(cumulation, start + scannedBytes, limit)
+            : indexOfLf(cumulation, start + scannedBytes, limit);
+        if (delimiter >= 0) {
+            scannedBytes = 0;
+            return delimiter;
+        }
+        scannedBytes = limit - start;
+        if (scannedBytes > maxFrameLength) {
+            throw new TooLongFrameException("frame length exceeds " + maxFrameLength);
+        }
+        return -1;
+    }
+
+    /**
+     * 帧内容的结束位置（不含），去掉分隔符前的 \r
+     */
+    public static int frameEnd(ByteBuffer cumulation, int delimiterIndex) {
+        if (delimiterIndex > cumulation.position() && cumulation.get(delimiterIndex - 1) == CR) {
+            return delimiterIndex - 1;
+        }
+        return delimiterIndex;
+    }
+
+    /**
+     * Buffer 的 [from, to) 中是否包含帧分隔符，不改变 Buffer 的状态
+     */
+    public static boolean containsDelimiter(ByteBuffer buffer, int from, int to) {
+        return indexOf(buffer, from, to) >= 0;
+    }
+
+    /**
+     * 在 Buffer 的 [from, to) 中查找第一个帧分隔符，返回其绝对索引，没有返回 -1。不改变 Buffer 的状态
+     */
+    public static int indexOf(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final byte b = buffer.get(i);
+            if (b == LF || b == ETX) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfLf(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == LF) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,13 @@
+package com.cnscarb.reactor.codec;
+
+import java.io.IOException;
+
+/**
+ * 帧长度超过上限时抛出，处理器收到后关闭连接
+ */
+public class TooLongFrameException extends IOException {
+
+    public TooLongFrameException(String message) {
+        super(message);
+    }
+}
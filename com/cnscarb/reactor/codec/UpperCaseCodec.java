@@ -0,0 +1,241 @@
+package com.cnscarb.reactor.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * 大写转换编解码器，直接在 ByteBuffer 之间转换 UTF-8 字节，不构造 String
+ * <p>
+ * ASCII 快速路径一次处理 8 个字节（SWAR，SIMD Within A Register）；遇到非 ASCII 字节时进入 UTF-8 慢速路径，逐个码点转换。
+ * 除了极少数大写后变成多个字符的特殊码点（如 ß -> SS）外，转换过程不分配任何对象
+ */
+public final class UpperCaseCodec {
+
+    /**
+     * 转换后的字节数最多是转换前的 3 倍（例如 2 字节的 ΐ 转换为 3 个码点共 6 字节）
+     */
+    public static final int MAX_EXPANSION = 3;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * 加上该值后，字节 >= 'a' 时最高位为 1
+     */
+    private static final long LOWER_A = 0x1F1F1F1F1F1F1F1FL;
+
+    /**
+     * 加上该值后，字节 > 'z' 时最高位为 1
+     */
+    private static final long ABOVE_Z = 0x0505050505050505L;
+
+    private UpperCaseCodec() {
+    }
+
+    /**
+     * 将 in 的 [position, limit) 转换为大写写入 out，两者的 position 都会前移
+     *
+     * @return out 剩余空间不足时返回 false，此时 in 和 out 的 position 都不变
+     */
+    public static boolean encode(ByteBuffer in, ByteBuffer out) {
+        final int inStart = in.position();
+        final int outStart = out.position();
+        final int inLimit = in.limit();
+        int i = inStart;
+        int o = outStart;
+        if (out.remaining() < inLimit - inStart) {
+            // ASCII 转换前后长度不变，空间不足时仍可能因为非 ASCII 字符长度变化而放得下，交给慢速路径判断
+            return encodeSlow(in, out, i, o, inStart, outStart);
+        }
+
+        // 快速路径：一次处理 8 个 ASCII 字节
+        while (i + Long.BYTES <= inLimit) {
+            final long word = in.getLong(i);
+            if ((word & HIGH_BITS) != 0) {
+                // 包含非 ASCII 字节
+                break;
+            }
+            out.putLong(o, toUpperCaseAscii(word));
+            i += Long.BYTES;
+            o += Long.BYTES;
+        }
+        return encodeSlow(in, out, i, o, inStart, outStart);
+    }
+
+    /**
+     * 将 8 个 ASCII 字节中的小写字母同时转为大写：小写字母的最高位标记右移两位得到 0x20，异或后清除小写位
+     */
+    static long toUpperCaseAscii(long word) {
+        final long lower = (word + LOWER_A) & ~(word + ABOVE_Z) & HIGH_BITS;
+        return word ^ (lower >>> 2);
+    }
+
+    /**
+     * 慢速路径：逐字节处理 ASCII，逐码点处理多字节 UTF-8
+     */
+    private static boolean encodeSlow(ByteBuffer in, ByteBuffer out, int i, int o, int inStart, int outStart) {
+        final int inLimit = in.limit();
+        final int outLimit = out.limit();
+        while (i < inLimit) {
+            final int b = in.get(i);
+            if (b >= 0) {
+                if (o >= outLimit) {
+                    return overflow(in, out, inStart, outStart);
+                }
+                out.put(o++, (b >= 'a' && b <= 'z') ? (byte) (b - 0x20) : (byte) b);
+                i++;
+                continue;
+            }
+
+            final int length = sequenceLength(in, i, inLimit);
+            if (length < 0) {
+                // 非法的 UTF-8 字节，原样输出
+                if (o >= outLimit) {
+                    return overflow(in, out, inStart, outStart);
+                }
+                out.put(o++, (byte) b);
+                i++;
+                continue;
+            }
+            final int codePoint = decode(in, i, length);
+            i += length;
+
+            if (hasSpecialUpperCase(codePoint)) {
+                // 大写后变成多个字符的特殊码点，如 ß -> SS，很少见，借助 String 处理
+                final String special = new String(Character.toChars(codePoint)).toUpperCase(Locale.ROOT);
+                for (int k = 0; k < special.length(); k = special.offsetByCodePoints(k, 1)) {
+                    o = put(out, o, special.codePointAt(k));
+                    if (o < 0) {
+                        return overflow(in, out, inStart, outStart);
+                    }
+                }
+            } else {
+                o = put(out, o, Character.toUpperCase(codePoint));
+                if (o < 0) {
+                    return overflow(in, out, inStart, outStart);
+                }
+            }
+        }
+        in.position(i);
+        out.position(o);
+        return true;
+    }
+
+    /**
+     * 是否为 SpecialCasing.txt 中无条件映射为多个字符的码点，{@link Character#toUpperCase(int)} 无法正确处理
+     */
+    static boolean hasSpecialUpperCase(int codePoint) {
+        return codePoint == 0x00DF || codePoint == 0x0149 || codePoint == 0x01F0 || codePoint == 0x0390
+            || codePoint == 0x03B0 || codePoint == 0x0587
+            || (codePoint >= 0x1E96 && codePoint <= 0x1E9A)
+            || (codePoint >= 0x1F50 && codePoint <= 0x1FFF)
+            || (codePoint >= 0xFB00 && codePoint <= 0xFB17);
+    }
+
+    /**
+     * Buffer 的 [from, to) 末尾不完整的 UTF-8 多字节序列的长度（0 ~ 3）。
+     * 流式转换时这些字节应留到下次，与后续字节一起转换，否则被拆开的字符会被当成非法字节原样输出
+     */
+    public static int incompleteSequenceLength(ByteBuffer buffer, int from, int to) {
+        for (int i = to - 1; i >= Math.max(from, to - 3); i--) {
+            final int b = buffer.get(i) & 0xFF;
+            if ((b & 0xC0) == 0x80) {
+                // 后续字节，继续向前找首字节
+                continue;
+            }
+            if (b >= 0xC0) {
+                final int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+                return to - i < length ? to - i : 0;
+            }
+            return 0;
+        }
+        return 0;
+    }
+
+    private static boolean overflow(ByteBuffer in, ByteBuffer out, int inStart, int outStart) {
+        in.position(inStart);
+        out.position(outStart);
+        return false;
+    }
+
+    /**
+     * 校验并返回从 i 开始的 UTF-8 多字节序列长度，非法序列返回 -1
+     */
+    private static int sequenceLength(ByteBuffer in, int i, int limit) {
+        final int b = in.get(i) & 0xFF;
+        final int length;
+        if (b >= 0xC2 && b <= 0xDF) {
+            length = 2;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            length = 3;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            length = 4;
+        } else {
+            return -1;
+        }
+        if (i + length > limit) {
+            return -1;
+        }
+        for (int k = 1; k < length; k++) {
+            if ((in.get(i + k) & 0xC0) != 0x80) {
+                return -1;
+            }
+        }
+        final int codePoint = decode(in, i, length);
+        if ((length == 3 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint)))
+            || (length == 4 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT))) {
+            // 过长编码、代理区码点或超出 Unicode 范围
+            return -1;
+        }
+        return length;
+    }
+
+    private static int decode(ByteBuffer in, int i, int length) {
+        final int b0 = in.get(i);
+        switch (length) {
+            case 2:
+                return ((b0 & 0x1F) << 6) | (in.get(i + 1) & 0x3F);
+            case 3:
+                return ((b0 & 0x0F) << 12) | ((in.get(i + 1) & 0x3F) << 6) | (in.get(i + 2) & 0x3F);
+            default:
+                return ((b0 & 0x07) << 18) | ((in.get(i + 1) & 0x3F) << 12) | ((in.get(i + 2) & 0x3F) << 6)
+                    | (in.get(i + 3) & 0x3F);
+        }
+    }
+
+    /**
+     * 将码点以 UTF-8 编码写入 out 的绝对位置 o
+     *
+     * @return 写入后的位置，空间不足返回 -1
+     */
+    private static int put(ByteBuffer out, int o, int codePoint) {
+        final int limit = out.limit();
+        if (codePoint < 0x80) {
+            if (o + 1 > limit) {
+                return -1;
+            }
+            out.put(o++, (byte) codePoint);
+        } else if (codePoint < 0x800) {
+            if (o + 2 > limit) {
+                return -1;
+            }
+            out.put(o++, (byte) (0xC0 | (codePoint >> 6)));
+            out.put(o++, (byte) (0x80 | (codePoint & 0x3F)));
+        } else if (codePoint < 0x10000) {
+            if (o + 3 > limit) {
+                return -1;
+            }
+            out.put(o++, (byte) (0xE0 | (codePoint >> 12)));
+            out.put(o++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            out.put(o++, (byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+            if (o + 4 > limit) {
+                return -1;
+            }
+            out.put(o++, (byte) (0xF0 | (codePoint >> 18)));
+            out.put(o++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            out.put(o++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            out.put(o++, (byte) (0x80 | (codePoint & 0x3F)));
+        }
+        return o;
+    }
+}
@@ -0,0 +1,475 @@
+package com.cnscarb.reactor.journal;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.cnscarb.reactor.journal.JournalFormat.*;
+
+/**
+ * 请求日志：Reactor 线程把每个请求和响应追加到无锁的环形缓冲区，后台线程批量写入按大小滚动的内存映射段文件。
+ * <p>
+ * 追加只做一次 CAS 占位和几次内存拷贝，不分配对象、不做系统调用，可以在任意线程中并发调用；
+ * 创建、映射、刷盘和删除段文件都在后台线程中。后台线程跟不上时按 {@link OverflowPolicy} 丢弃记录，或者有限时间地等待。
+ * 记录写入映射内存后即使进程崩溃也由操作系统写回，滚动和关闭时调用 {@link MappedByteBuffer#force()} 刷盘。
+ * 段文件的格式见 {@link JournalFormat}，用 {@link JournalReader} 解码
+ * <pre>
+ * Journal journal = new Journal(Path.of("journal")).maxSegments(16).start();
+ * reactorGroup.journal(journal);
+ * </pre>
+ */
+public class Journal implements AutoCloseable {
+
+    /**
+     * BIO 模式没有 Reactor，连接编号的高 24 位固定为这个值，低 40 位是 BioServer 内的连接序号
+     */
+    public static final int BIO_REACTOR_ID = (1 << 24) - 1;
+
+    /**
+     * 环形缓冲区已满时追加记录的处理方式
+     */
+    public enum OverflowPolicy {
+        /**
+         * 立即丢弃并计数，调用线程不等待
+         */
+        DROP,
+        /**
+         * 等待后台线程腾出空间，超过 {@link #maxBlock(long, TimeUnit)} 仍放不下时丢弃并计数
+         */
+        BLOCK
+    }
+
+    /**
+     * 以 release/acquire 语义读写记录长度，长度最后写入，后台线程读到非 0 的长度时整条记录都已可见
+     */
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ORDER);
+
+    /**
+     * 后台线程空闲时的等待时间，从最小值开始倍增，读到数据后恢复
+     */
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * BLOCK 策略下调用线程每次等待的时间
+     */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    /**
+     * 后台线程每批最多消费的字节数，消费完一批就推进 head，尽早给生产者腾出空间
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    /**
+     * 创建段文件失败（例如磁盘已满）后，间隔多久再重试，期间的记录被丢弃
+     */
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * tail 的最高位，表示已关闭。关闭和占位都通过 CAS 修改 tail，关闭之后不会再有记录占到空间，
+     * 关闭之前占到空间的记录一定会被后台线程写完
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final Path directory;
+
+    private int ringCapacity = 4 * 1024 * 1024;
+
+    private int segmentSize = 64 * 1024 * 1024;
+
+    private int maxSegments;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    private long maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 环形缓冲区，容量是 2 的幂。生产者只用绝对位置读写，不修改 position，因此可以并发写入不相交的区域
+     */
+    private ByteBuffer ring;
+
+    private int mask;
+
+    /**
+     * 单条记录的最大长度（对齐后），超过的直接丢弃
+     */
+    private int maxRecordLength;
+
+    /**
+     * 生产者通过 CAS 占位的写入位置，单调递增，取模后是环形缓冲区中的下标。最高位是 {@link #CLOSED}
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 后台线程已经消费并清零的位置，单调递增
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * 被丢弃的记录数：环形缓冲区已满、记录过长、已关闭或者写段文件失败
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * 已写入段文件的记录数，只由后台线程修改
+     */
+    private volatile long written;
+
+    /**
+     * 已启动且没有关闭，用于快速拒绝，是否能写入以 tail 中的 {@link #CLOSED} 为准
+     */
+    private volatile boolean running;
+
+    private Thread writer;
+
+    /**
+     * 当前段文件的映射，position 是下一条记录的位置，只在后台线程中使用
+     */
+    private MappedByteBuffer segment;
+
+    private long nextSegmentIndex;
+
+    /**
+     * 目录中现有的段文件，用于按 maxSegments 删除最旧的段文件，只在后台线程中使用
+     */
+    private final ArrayDeque<Path> segments = new ArrayDeque<>();
+
+    private long lastFailureNanos;
+
+    private boolean failed;
+
+    public Journal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 环形缓冲区的容量，必须是 2 的幂，默认 4 MB。单条记录最多占用 1/4
+     */
+    public Journal ringCapacity(int ringCapacity) {
+        if (ringCapacity < 4096 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("ringCapacity must be a power of two >= 4096: " + ringCapacity);
+        }
+        this.ringCapacity = ringCapacity;
+        return this;
+    }
+
+    /**
+     * 每个段文件的大小，写满后滚动到下一个，默认 64 MB。文件按这个大小映射，未写入的部分是稀疏的
+     */
+    public Journal segmentSize(int segmentSize) {
+        if (segmentSize < 4096 || segmentSize % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("segmentSize must be a multiple of " + ALIGNMENT + " >= 4096: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * 最多保留的段文件数，超过后删除最旧的，0 表示不删除
+     */
+    public Journal maxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+        return this;
+    }
+
+    public Journal overflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * BLOCK 策略下最多等待的时间，默认 10 ms。调用线程通常是 Reactor 线程，等待期间无法处理其他连接
+     */
+    public Journal maxBlock(long maxBlock, TimeUnit unit) {
+        this.maxBlockNanos = unit.toNanos(maxBlock);
+        return this;
+    }
+
+    /**
+     * 创建目录和环形缓冲区，启动后台线程。段文件的序号接着目录中已有的段文件
+     */
+    public synchronized Journal start() throws IOException {
+        if (ring != null) {
+            throw new IllegalStateException("journal already started");
+        }
+        Files.createDirectories(directory);
+        for (Path path : segments(directory)) {
+            segments.addLast(path);
+            nextSegmentIndex = segmentIndex(path) + 1;
+        }
+        ring = ByteBuffer.allocateDirect(ringCapacity).order(ORDER);
+        mask = ringCapacity - 1;
+        maxRecordLength = Math.min(ringCapacity / 4, segmentSize - FILE_HEADER_LENGTH);
+        running = true;
+        writer = new Thread(this::drainLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return this;
+    }
+
+    /**
+     * 追加一条记录，不分配对象，线程安全。请求和响应按绝对位置复制，不修改两个 Buffer 的 position 和 limit
+     *
+     * @param connectionId  连接编号，见 {@link JournalFormat}
+     * @param durationNanos 从读到请求到生成响应的耗时
+     * @return 是否写入了环形缓冲区，false 表示记录被丢弃
+     */
+    public boolean append(long connectionId, long durationNanos,
+                          ByteBuffer request, int requestOffset, int requestLength,
+                          ByteBuffer response, int responseOffset, int responseLength) {
+        final int length = RECORD_HEADER_LENGTH + requestLength + responseLength;
+        final int alignedLength = align(length);
+        if (!running || alignedLength > maxRecordLength) {
+            dropped.increment();
+            return false;
+        }
+        int index;
+        long deadline = 0;
+        while ((index = claim(alignedLength)) < 0) {
+            if (index == CLAIM_CLOSED || overflowPolicy == OverflowPolicy.DROP) {
+                dropped.increment();
+                return false;
+            }
+            final long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + maxBlockNanos;
+            } else if (now - deadline >= 0) {
+                dropped.increment();
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        final ByteBuffer ring = this.ring;
+        ring.putInt(index + TYPE_OFFSET, TYPE_RECORD);
+        ring.putLong(index + CONNECTION_ID_OFFSET, connectionId);
+        ring.putLong(index + EPOCH_MILLIS_OFFSET, System.currentTimeMillis());
+        ring.putLong(index + DURATION_NANOS_OFFSET, durationNanos);
+        ring.putInt(index + REQUEST_LENGTH_OFFSET, requestLength);
+        ring.putInt(index + RESPONSE_LENGTH_OFFSET, responseLength);
+        ring.put(index + RECORD_HEADER_LENGTH, request, requestOffset, requestLength);
+        ring.put(index + RECORD_HEADER_LENGTH + requestLength, response, responseOffset, responseLength);
+        // 最后发布长度，后台线程读到长度时记录的其他部分都已写完
+        INT.setRelease(ring, index + LENGTH_OFFSET, length);
+        return true;
+    }
+
+    private static final int CLAIM_FULL = -1, CLAIM_CLOSED = -2;
+
+    /**
+     * 在环形缓冲区中占用一段连续空间，返回起始下标，空间不足时返回 {@link #CLAIM_FULL}，已关闭时返回 {@link #CLAIM_CLOSED}。
+     * 末尾剩余空间放不下时，连同剩余空间一起占用，剩余空间写入填充记录，记录从下标 0 开始
+     */
+    private int claim(int alignedLength) {
+        while (true) {
+            final long tail = this.tail.get();
+            if ((tail & CLOSED) != 0) {
+                return CLAIM_CLOSED;
+            }
+            final long head = this.head.get();
+            final int tailIndex = (int) tail & mask;
+            final int toEnd = ringCapacity - tailIndex;
+            final int required = alignedLength > toEnd ? toEnd + alignedLength : alignedLength;
+            if (required > ringCapacity - (int) (tail - head)) {
+                return CLAIM_FULL;
+            }
+            if (this.tail.compareAndSet(tail, tail + required)) {
+                if (required == alignedLength) {
+                    return tailIndex;
+                }
+                ring.putInt(tailIndex + TYPE_OFFSET, TYPE_PADDING);
+                INT.setRelease(ring, tailIndex + LENGTH_OFFSET, toEnd);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 后台线程：持续消费环形缓冲区，关闭后写完关闭前占位的所有记录再退出
+     */
+    private void drainLoop() {
+        long idleNanos = MIN_IDLE_PARK_NANOS;
+        long tail;
+        while (((tail = this.tail.get()) & CLOSED) == 0 || head.get() != (tail & ~CLOSED)) {
+            if (drain() > 0) {
+                idleNanos = MIN_IDLE_PARK_NANOS;
+            } else {
+                LockSupport.parkNanos(idleNanos);
+                idleNanos = Math.min(idleNanos * 2, MAX_IDLE_PARK_NANOS);
+            }
+        }
+        closeSegment();
+    }
+
+    /**
+     * 按顺序消费已提交的记录，遇到尚未写完的记录就停下。消费过的区域清零后再推进 head，
+     * 生产者复用这段空间时，还没发布的记录长度一定是 0
+     *
+     * @return 消费的字节数
+     */
+    private int drain() {
+        final long head = this.head.get();
+        int consumed = 0;
+        int records = 0;
+        while (consumed < MAX_DRAIN_BYTES) {
+            final int index = (int) (head + consumed) & mask;
+            final int length = (int) INT.getAcquire(ring, index + LENGTH_OFFSET);
+            if (length == 0) {
+                break;
+            }
+            final int alignedLength;
+            if (ring.getInt(index + TYPE_OFFSET) == TYPE_PADDING) {
+                alignedLength = length;
+            } else {
+                alignedLength = align(length);
+                if (write(index, length)) {
+                    records++;
+                }
+            }
+            for (int i = 0; i < alignedLength; i += ALIGNMENT) {
+                ring.putLong(index + i, 0L);
+            }
+            consumed += alignedLength;
+        }
+        if (consumed > 0) {
+            this.head.lazySet(head + consumed);
+            written += records;
+        }
+        return consumed;
+    }
+
+    /**
+     * 把一条记录复制到当前段文件，放不下时滚动到新的段文件
+     */
+    private boolean write(int index, int length) {
+        final int alignedLength = align(length);
+        if ((segment == null || segment.remaining() < alignedLength) && !rotate()) {
+            dropped.increment();
+            return false;
+        }
+        final int position = segment.position();
+        try {
+            // 长度最后写入，读取正在写入的段文件时不会读到不完整的记录
+            segment.put(position + TYPE_OFFSET, ring, index + TYPE_OFFSET, length - TYPE_OFFSET);
+            segment.putInt(position + LENGTH_OFFSET, length);
+        } catch (InternalError e) {
+            // 稀疏文件在磁盘已满时无法分配页，访问映射内存会收到 SIGBUS，JVM 转换为 InternalError
+            fail("failed to write segment", e);
+            segment = null;
+            dropped.increment();
+            return false;
+        }
+        segment.position(position + alignedLength);
+        return true;
+    }
+
+    /**
+     * 刷盘并释放当前段文件，创建、映射下一个段文件，删除超出数量的旧段文件
+     */
+    private boolean rotate() {
+        if (failed && System.nanoTime() - lastFailureNanos < RETRY_NANOS) {
+            return false;
+        }
+        closeSegment();
+        final Path path = directory.resolve(segmentName(nextSegmentIndex++));
+        try (FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射在 Channel 关闭后仍然有效
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            fail("failed to create segment " + path, e);
+            return false;
+        }
+        failed = false;
+        segment.order(ORDER);
+        segment.putInt(MAGIC).putInt(VERSION);
+        segments.addLast(path);
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            final Path oldest = segments.removeFirst();
+            try {
+                Files.deleteIfExists(oldest);
+            } catch (IOException e) {
+                System.err.println("journal: failed to delete segment " + oldest + ": " + e);
+            }
+        }
+        return true;
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    /**
+     * 记录失败时间，重试间隔内不再创建段文件，只在第一次失败时打印
+     */
+    private void fail(String message, Throwable cause) {
+        if (!failed) {
+            System.err.println("journal: " + message + ": " + cause);
+        }
+        failed = true;
+        lastFailureNanos = System.nanoTime();
+    }
+
+    /**
+     * 已写入段文件的记录数
+     */
+    public long written() {
+        return written;
+    }
+
+    /**
+     * 被丢弃的记录数
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 环形缓冲区中等待后台线程写入的字节数
+     */
+    public long pendingBytes() {
+        return (tail.get() & ~CLOSED) - head.get();
+    }
+
+    /**
+     * 停止接收新记录，等后台线程写完已接收的记录、刷盘后返回。
+     * 等待时被中断则恢复中断状态并立即返回，后台线程继续写完剩余的记录
+     */
+    @Override
+    public synchronized void close() {
+        if (writer == null || !running) {
+            return;
+        }
+        running = false;
+        // 与生产者的占位互斥：设置之后 append 都会丢弃记录，之前占到空间的记录由后台线程写完
+        tail.getAndUpdate(value -> value | CLOSED);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Journal{directory=" + directory
+            + ", written=" + written()
+            + ", dropped=" + dropped()
+            + ", pendingBytes=" + pendingBytes()
+            + '}';
+    }
+}
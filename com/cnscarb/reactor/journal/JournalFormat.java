@@ -0,0 +1,100 @@
+package com.cnscarb.reactor.journal;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 日志记录和段文件的二进制格式，环形缓冲区和段文件中的记录格式相同，都是小端序、8 字节对齐：
+ * <pre>
+ * 0  int  length          记录长度，包括记录头，不包括对齐填充。0 表示尚未写完（环形缓冲区）或者段文件结束
+ * 4  int  type            {@link #TYPE_RECORD}，或者环形缓冲区末尾的 {@link #TYPE_PADDING}
+ * 8  long connectionId    高 24 位是 Reactor 编号，低 40 位是该 Reactor 内的连接序号。
+ *                         UDP 数据报的序号是 0，BIO 模式的 Reactor 编号是 {@link Journal#BIO_REACTOR_ID}
+ * 16 long epochMillis     写入日志时的墙上时间
+ * 24 long durationNanos   从读到请求到生成响应的耗时
+ * 32 int  requestLength
+ * 36 int  responseLength
+ * 40      请求字节，紧接着是响应字节
+ * </pre>
+ * 段文件以 {@link #MAGIC}、{@link #VERSION} 开头，之后是连续的记录。
+ * 段文件按序号命名，例如 journal-0000000000000042.seg，文件名的字典序就是写入顺序
+ */
+final class JournalFormat {
+
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * 段文件开头的魔数，按小端序读出来是 "RJNL"
+     */
+    static final int MAGIC = 0x4c4e4a52;
+
+    static final int VERSION = 1;
+
+    static final int FILE_HEADER_LENGTH = 8;
+
+    static final int LENGTH_OFFSET = 0;
+
+    static final int TYPE_OFFSET = 4;
+
+    static final int CONNECTION_ID_OFFSET = 8;
+
+    static final int EPOCH_MILLIS_OFFSET = 16;
+
+    static final int DURATION_NANOS_OFFSET = 24;
+
+    static final int REQUEST_LENGTH_OFFSET = 32;
+
+    static final int RESPONSE_LENGTH_OFFSET = 36;
+
+    static final int RECORD_HEADER_LENGTH = 40;
+
+    static final int TYPE_RECORD = 1;
+
+    /**
+     * 环形缓冲区末尾放不下一条记录时，用填充记录占满剩余空间，记录从头开始写。填充记录不会写入段文件
+     */
+    static final int TYPE_PADDING = 2;
+
+    static final int ALIGNMENT = 8;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private JournalFormat() {
+    }
+
+    static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    static String segmentName(long index) {
+        return String.format(Locale.ROOT, "%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    static long segmentIndex(Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * 目录中的所有段文件，按写入顺序排列
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> {
+                    final String name = path.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.cnscarb.reactor.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import static com.cnscarb.reactor.journal.JournalFormat.*;
+
+/**
+ * 解码 {@link Journal} 写入的段文件，每条记录打印一行
+ * <pre>
+ * java com.cnscarb.reactor.journal.JournalReader journal/                    # 目录中的所有段文件
+ * java com.cnscarb.reactor.journal.JournalReader journal/journal-0000000000000003.seg
+ * </pre>
+ * 可以读取正在写入的段文件，只读到后台线程已经写入的记录为止
+ */
+public class JournalReader {
+
+    /**
+     * 一条请求日志
+     */
+    public static final class Record {
+
+        public final long connectionId;
+
+        public final long epochMillis;
+
+        public final long durationNanos;
+
+        public final byte[] request;
+
+        public final byte[] response;
+
+        Record(long connectionId, long epochMillis, long durationNanos, byte[] request, byte[] response) {
+            this.connectionId = connectionId;
+            this.epochMillis = epochMillis;
+            this.durationNanos = durationNanos;
+            this.request = request;
+            this.response = response;
+        }
+
+        /**
+         * 处理该连接的 Reactor 的编号，对应线程名 reactor-N。BIO 模式的连接是 {@link Journal#BIO_REACTOR_ID}
+         */
+        public int reactorId() {
+            return (int) (connectionId >>> 40);
+        }
+
+        /**
+         * 连接在该 Reactor 中的序号
+         */
+        public long connectionSequence() {
+            return connectionId & ((1L << 40) - 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %s#%d %.1fus request=\"%s\" response=\"%s\"",
+                Instant.ofEpochMilli(epochMillis),
+                reactorId() == Journal.BIO_REACTOR_ID ? "bio" : "reactor-" + reactorId(),
+                connectionSequence(), durationNanos / 1e3,
+                escape(request), escape(response));
+        }
+    }
+
+    /**
+     * 按顺序读取段文件中的所有记录
+     *
+     * @throws IOException 文件不是段文件或者记录已损坏
+     */
+    public static void read(Path segment, Consumer<Record> consumer) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ORDER);
+        }
+        if (buffer.remaining() < FILE_HEADER_LENGTH
+            || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not a journal segment: " + segment);
+        }
+        int position = FILE_HEADER_LENGTH;
+        while (position + RECORD_HEADER_LENGTH <= buffer.limit()) {
+            final int length = buffer.getInt(position + LENGTH_OFFSET);
+            if (length == 0) {
+                // 段文件中尚未写入的部分
+                break;
+            }
+            final int requestLength = buffer.getInt(position + REQUEST_LENGTH_OFFSET);
+            final int responseLength = buffer.getInt(position + RESPONSE_LENGTH_OFFSET);
+            if (buffer.getInt(position + TYPE_OFFSET) != TYPE_RECORD || requestLength < 0 || responseLength < 0
+                || length != RECORD_HEADER_LENGTH + requestLength + responseLength
+                || position + length > buffer.limit()) {
+                throw new IOException("corrupted record at " + segment + ":" + position);
+            }
+            final byte[] request = new byte[requestLength];
+            final byte[] response = new byte[responseLength];
+            buffer.get(position + RECORD_HEADER_LENGTH, request);
+            buffer.get(position + RECORD_HEADER_LENGTH + requestLength, response);
+            consumer.accept(new Record(buffer.getLong(position + CONNECTION_ID_OFFSET),
+                buffer.getLong(position + EPOCH_MILLIS_OFFSET), buffer.getLong(position + DURATION_NANOS_OFFSET),
+                request, response));
+            position += align(length);
+        }
+    }
+
+    /**
+     * 参数是段文件或者目录，目录按写入顺序读取其中所有的段文件
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: JournalReader <directory | segment>...");
+            System.exit(1);
+        }
+        final List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            final Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                files.addAll(segments(path));
+            } else {
+                files.add(path);
+            }
+        }
+        for (Path file : files) {
+            read(file, System.out::println);
+        }
+    }
+
+    /**
+     * 按 UTF-8 解码，换行等控制字符转义，每条记录保持在一行
+     */
+    private static String escape(byte[] bytes) {
+        final String text = new String(bytes, StandardCharsets.UTF_8);
+        final StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '"':
+                case '\\':
+                    sb.append('\\').append(c);
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x7f) {
+                        sb.append(String.format(Locale.ROOT, "\\x%02x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.cnscarb.reactor.loadgen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测工具共用的命令行：解析 --key value 形式的参数，以及测完后退出进程
+ */
+final class CommandLine {
+
+    private final Map<String, String> options = new HashMap<>();
+
+    private CommandLine(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("expected --key value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+    }
+
+    static CommandLine parse(String[] args) {
+        return new CommandLine(args);
+    }
+
+    /**
+     * 没有指定时返回 null
+     */
+    String get(String key) {
+        return options.get(key);
+    }
+
+    String get(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    int getInt(String key, int defaultValue) {
+        final String value = options.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    long getLong(String key, long defaultValue) {
+        final String value = options.get(key);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    /**
+     * 同一进程中启动的服务端的 Reactor 线程不是守护线程，测完后直接退出进程
+     */
+    static void exit(int status) {
+        System.exit(status);
+    }
+}
@@ -0,0 +1,112 @@
+package com.cnscarb.reactor.loadgen;
+
+import com.cnscarb.reactor.reactor.MultiReactorBootstrap;
+import com.cnscarb.reactor.reactor.NioHandler;
+import com.cnscarb.reactor.reactor.ReactorGroup;
+import com.cnscarb.reactor.reactor.TimeoutConfig;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 检查空闲连接占用的堆内存：启动回收 Handler 的多 Reactor 服务端，建立大量收到提示符后不再发送数据的连接，
+ * 用类直方图（与 jcmd GC.class_histogram 相同）统计服务端每个连接的对象，超过预算时以状态码 1 退出。
+ * <pre>
+ * java com.cnscarb.reactor.loadgen.FootprintTest --connections 5000 --reactors 4 --idle-timeout 600 --budget 200
+ * </pre>
+ * 只统计本项目的类（Handler、发送队列、帧解码器、超时检查任务等），实例数少于连接数的类是共享对象，不计入。
+ * JDK 的 SocketChannelImpl、SelectionKeyImpl 等与客户端连接在同一个进程中，单独列出供参考
+ */
+public class FootprintTest {
+
+    private static final Pattern HISTOGRAM_LINE = Pattern.compile("^\\s*\\d+:\\s+(\\d+)\\s+(\\d+)\\s+(\\S+)");
+
+    private static final String PROJECT_PACKAGE = "com.cnscarb.reactor.";
+
+    private static final String[] JDK_CLASSES = {"sun.nio.ch.SocketChannelImpl", "sun.nio.ch.SelectionKeyImpl"};
+
+    public static void main(String[] args) throws Exception {
+        final CommandLine options = CommandLine.parse(args);
+        final int port = options.getInt("port", 18180);
+        final int connections = options.getInt("connections", 5000);
+        final int reactors = options.getInt("reactors", 4);
+        final long idleTimeout = options.getLong("idle-timeout", 600);
+        final long budget = options.getLong("budget", 200);
+
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+        final ReactorGroup subReactorGroup = new ReactorGroup(reactors)
+            .timeouts(TimeoutConfig.DEFAULT.idleTimeout(idleTimeout, TimeUnit.SECONDS));
+        new MultiReactorBootstrap(address, new ReactorGroup(1), subReactorGroup, NioHandler.RECYCLING);
+
+        final List<SocketChannel> clients = new ArrayList<>(connections);
+        final ByteBuffer greeting = ByteBuffer.allocate(NioHandler.GREETING.capacity());
+        for (int i = 0; i < connections; i++) {
+            final SocketChannel client = SocketChannel.open(address);
+            // 读到提示符说明服务端已经创建 Handler，并且发送队列已经清空
+            greeting.clear();
+            while (greeting.hasRemaining()) {
+                if (client.read(greeting) < 0) {
+                    throw new IllegalStateException("connection closed by server");
+                }
+            }
+            clients.add(client);
+        }
+        while (subReactorGroup.activeConnections() < connections) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        long perConnection = 0;
+        final Map<String, long[]> jdk = new HashMap<>();
+        System.out.printf(Locale.ROOT, "%-60s %10s %10s%n", "class", "instances", "B/conn");
+        for (String line : histogram().split("\n")) {
+            final Matcher matcher = HISTOGRAM_LINE.matcher(line);
+            if (!matcher.find()) {
+                continue;
+            }
+            final long instances = Long.parseLong(matcher.group(1));
+            final long bytes = Long.parseLong(matcher.group(2));
+            final String className = matcher.group(3);
+            if (className.startsWith(PROJECT_PACKAGE) && instances >= connections) {
+                perConnection += bytes;
+                System.out.printf(Locale.ROOT, "%-60s %10d %10.1f%n", className, instances, (double) bytes / connections);
+            }
+            for (String jdkClass : JDK_CLASSES) {
+                if (jdkClass.equals(className)) {
+                    jdk.put(className, new long[]{instances, bytes});
+                }
+            }
+        }
+        perConnection /= connections;
+        for (Map.Entry<String, long[]> entry : jdk.entrySet()) {
+            System.out.printf(Locale.ROOT, "%-60s %10d %10.1f  (JDK, server and client)%n",
+                entry.getKey(), entry.getValue()[0], (double) entry.getValue()[1] / connections);
+        }
+        System.out.printf(Locale.ROOT, "connections=%d reactor objects=%d B/conn budget=%d B/conn%n",
+            connections, perConnection, budget);
+
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        CommandLine.exit(perConnection <= budget ? 0 : 1);
+    }
+
+    /**
+     * 通过 DiagnosticCommand MBean 获取类直方图，统计前会进行一次 Full GC，只包含存活对象
+     */
+    private static String histogram() throws Exception {
+        return (String) ManagementFactory.getPlatformMBeanServer().invoke(
+            new ObjectName("com.sun.management:type=DiagnosticCommand"),
+            "gcClassHistogram", new Object[]{new String[0]}, new String[]{String[].class.getName()});
+    }
+}
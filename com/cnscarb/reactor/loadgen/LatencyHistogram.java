@@ -0,0 +1,133 @@
+package com.cnscarb.reactor.loadgen;
+
+import java.util.Arrays;
+
+/**
+ * 延迟直方图，参照 HdrHistogram 的对数-线性分桶：按 2 的幂分段，每段再均分为 {@link #SUB_BUCKETS} 个桶，
+ * 记录值的相对误差不超过 1 / {@link #SUB_BUCKETS}（约 0.8%），固定大小，记录时不分配内存
+ * <p>
+ * 非线程安全，每个压测线程使用自己的直方图，结束后合并
+ */
+public class LatencyHistogram {
+
+    /**
+     * 每段的桶数的位数
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 小于 SUB_BUCKETS 的值每个值一个桶，之后每个 2 的幂一段，覆盖所有非负 long
+     */
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+    private final long[] counts = new long[BUCKETS];
+
+    private long totalCount;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max;
+
+    private double sum;
+
+    /**
+     * 记录一个值，负数按 0 记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * 合并另一个直方图的记录
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long totalCount() {
+        return totalCount;
+    }
+
+    public long min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * 指定百分位上的值，返回所在桶的上界（不超过记录到的最大值），和 HdrHistogram 一致，只会高估不会低估
+     *
+     * @param percentile 0 ~ 100
+     */
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 值所在的桶。值的最高位在第 e 位（e >= SUB_BUCKET_BITS）时，右移 e - SUB_BUCKET_BITS 位后
+     * 落在 [SUB_BUCKETS, 2 * SUB_BUCKETS) 中，低 SUB_BUCKET_BITS 位作为段内的桶号
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * 桶中最大的值
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        final long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
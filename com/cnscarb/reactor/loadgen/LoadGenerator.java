@@ -0,0 +1,515 @@
+package com.cnscarb.reactor.loadgen;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于 NIO 的压测客户端，每个压测线程用一个 Selector 驱动一部分连接
+ * <p>
+ * 请求是一行小写字母，服务端返回大写的行和提示符。所有模式的提示符都以 {@code "> "} 结尾，且响应中不会出现其他 {@code '>'}，
+ * 因此每读到一个 {@code '>'} 就是一个响应（连接建立时的第一个是欢迎提示符）。
+ * <ul>
+ *     <li>闭环（rate = 0）：每个连接始终保持 pipelineDepth 个未完成的请求，收到一个响应就发送下一个，延迟从实际发送时算起</li>
+ *     <li>开环（rate > 0）：按固定速率安排请求，未完成的请求达到 pipelineDepth 时推迟发送，
+ *     延迟从计划发送时间算起，服务端变慢造成的排队也计入延迟，避免协调遗漏（coordinated omission）</li>
+ * </ul>
+ * 预热期间的结果不计入统计。
+ * <p>
+ * 数据报模式下每个"连接"是一个 connect 到服务端的 DatagramChannel，每个请求一个数据报，每收到一个数据报就是一个响应。
+ * 超过 {@link #DATAGRAM_LOSS_TIMEOUT_NANOS} 没有收到响应时认为未完成的请求已丢失，计入错误数后继续发送
+ */
+public class LoadGenerator {
+
+    private static final byte PROMPT_END = '>';
+
+    /**
+     * 开环模式下距离下一个计划发送时间不足 1 毫秒时，不再阻塞在 select 上，每次最多暂停的时间
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * 数据报模式下判定丢包的超时时间，以及检查的间隔
+     */
+    private static final long DATAGRAM_LOSS_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long DATAGRAM_LOSS_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SocketAddress target;
+
+    private int connections = 64;
+
+    private int threads = 1;
+
+    private int requestSize = 64;
+
+    private int pipelineDepth = 1;
+
+    private long rate;
+
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+
+    private boolean datagram;
+
+    /**
+     * @param target 服务端地址，可以是任意 {@link SocketChannel#open(SocketAddress)} 支持的地址
+     */
+    public LoadGenerator(SocketAddress target) {
+        this.target = target;
+    }
+
+    public LoadGenerator connections(int connections) {
+        this.connections = connections;
+        return this;
+    }
+
+    /**
+     * 压测线程数，连接平均分配到各个线程上
+     */
+    public LoadGenerator threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * 每个请求的字节数，包括换行符，不能超过服务端的最大帧长度
+     */
+    public LoadGenerator requestSize(int requestSize) {
+        if (requestSize < 2) {
+            throw new IllegalArgumentException("requestSize: " + requestSize + " (expected: >= 2)");
+        }
+        this.requestSize = requestSize;
+        return this;
+    }
+
+    /**
+     * 每个连接上最多同时未完成的请求数
+     */
+    public LoadGenerator pipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
+        return this;
+    }
+
+    /**
+     * 所有连接合计每秒发送的请求数，0 表示闭环
+     */
+    public LoadGenerator rate(long rate) {
+        this.rate = rate;
+        return this;
+    }
+
+    /**
+     * 是否通过 UDP 发送请求，目标地址需要是 {@link java.net.InetSocketAddress}
+     */
+    public LoadGenerator datagram(boolean datagram) {
+        this.datagram = datagram;
+        return this;
+    }
+
+    public LoadGenerator warmup(long warmup, TimeUnit unit) {
+        this.warmupNanos = unit.toNanos(warmup);
+        return this;
+    }
+
+    public LoadGenerator duration(long duration, TimeUnit unit) {
+        this.durationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * 建立所有连接，执行预热和压测，阻塞到压测结束并关闭所有连接
+     */
+    public LoadResult run() throws IOException, InterruptedException {
+        final ByteBuffer request = newRequest(requestSize);
+        final long interval = rate > 0 ? Math.max(1, TimeUnit.SECONDS.toNanos(1) * connections / rate) : 0;
+        final Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(request, interval);
+        }
+        try {
+            for (int i = 0; i < connections; i++) {
+                workers[i % threads].connect(interval / connections * i);
+            }
+        } catch (IOException e) {
+            for (Worker worker : workers) {
+                worker.closeAll();
+            }
+            throw e;
+        }
+
+        final long start = System.nanoTime();
+        final long measureStart = start + warmupNanos;
+        final long end = measureStart + durationNanos;
+        final Thread[] workerThreads = new Thread[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].schedule(start, measureStart, end);
+            workerThreads[i] = new Thread(workers[i], "loadgen-" + i);
+            workerThreads[i].start();
+        }
+        TimeUnit.NANOSECONDS.sleep(measureStart - System.nanoTime());
+        final ProcessStats before = ProcessStats.snapshot();
+        TimeUnit.NANOSECONDS.sleep(end - System.nanoTime());
+        final ProcessStats process = ProcessStats.snapshot().since(before);
+        for (Thread thread : workerThreads) {
+            thread.join();
+        }
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        long requests = 0, bytesIn = 0, bytesOut = 0, errors = 0, clientCpuNanos = 0;
+        for (Worker worker : workers) {
+            histogram.add(worker.histogram);
+            requests += worker.responses;
+            bytesIn += worker.bytesIn;
+            bytesOut += worker.bytesOut;
+            errors += worker.errors;
+            clientCpuNanos += worker.cpuNanos;
+        }
+        return new LoadResult(durationNanos, requests, bytesIn, bytesOut, errors, histogram, process, clientCpuNanos);
+    }
+
+    /**
+     * 小写字母加换行符
+     */
+    private static ByteBuffer newRequest(int size) {
+        final ByteBuffer request = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size - 1; i++) {
+            request.put((byte) ('a' + i % 26));
+        }
+        request.put((byte) '\n').flip();
+        return request.asReadOnlyBuffer();
+    }
+
+    /**
+     * 压测线程，所有状态只在该线程中访问
+     */
+    private final class Worker implements Runnable {
+
+        private final Selector selector = Selector.open();
+
+        private final List<Connection> connections = new ArrayList<>();
+
+        private final ByteBuffer request;
+
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        private final long interval;
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        long responses, bytesIn, bytesOut, errors, cpuNanos;
+
+        private long start, measureStart, end;
+
+        Worker(ByteBuffer request, long interval) throws IOException {
+            this.request = request;
+            this.interval = interval;
+        }
+
+        /**
+         * 建立一个连接，开环模式下按 offset 错开各个连接的发送时间
+         */
+        void connect(long offset) throws IOException {
+            final AbstractSelectableChannel channel;
+            if (datagram) {
+                // connect 之后只和服务端收发数据报，可以使用 read、write
+                channel = DatagramChannel.open().connect(target);
+            } else {
+                final SocketChannel socket = SocketChannel.open(target);
+                if (socket.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+                    socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                channel = socket;
+            }
+            channel.configureBlocking(false);
+            final Connection connection = new Connection((ByteChannel) channel, request.capacity() * pipelineDepth, offset);
+            // 数据报模式没有欢迎提示符
+            connection.greeted = datagram;
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+
+        void schedule(long start, long measureStart, long end) {
+            this.start = start;
+            this.measureStart = measureStart;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            boolean measuring = false;
+            long cpuStart = 0;
+            long lastLossCheck = 0;
+            try {
+                long now = System.nanoTime();
+                for (Connection connection : connections) {
+                    connection.nextSendTime = start + connection.offset;
+                    fill(connection, now);
+                }
+                while (true) {
+                    now = System.nanoTime();
+                    if (!measuring && now >= measureStart) {
+                        // 预热结束，丢弃之前的统计
+                        measuring = true;
+                        histogram.reset();
+                        responses = bytesIn = bytesOut = errors = 0;
+                        cpuStart = threadMXBean.getCurrentThreadCpuTime();
+                    }
+                    if (now >= end) {
+                        break;
+                    }
+                    final long deadline = measuring ? end : measureStart;
+                    select(now, datagram ? Math.min(deadline, now + DATAGRAM_LOSS_CHECK_NANOS) : deadline);
+                    processSelectedKeys();
+                    if (datagram && System.nanoTime() - lastLossCheck >= DATAGRAM_LOSS_CHECK_NANOS) {
+                        lastLossCheck = System.nanoTime();
+                        expireLostDatagrams(lastLossCheck);
+                    }
+                    if (interval > 0) {
+                        now = System.nanoTime();
+                        for (Connection connection : connections) {
+                            fill(connection, now);
+                        }
+                    }
+                }
+                cpuNanos = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+            } catch (IOException e) {
+                System.out.println("Load generator failed: " + e.getMessage());
+            } finally {
+                closeAll();
+            }
+        }
+
+        /**
+         * 等待 IO 事件，闭环模式下最多等到 deadline，开环模式下最多等到下一个计划发送时间
+         */
+        private void select(long now, long deadline) throws IOException {
+            if (interval > 0) {
+                for (Connection connection : connections) {
+                    if (connection.key.isValid() && connection.outstanding < pipelineDepth
+                        && connection.nextSendTime < deadline) {
+                        deadline = connection.nextSendTime;
+                    }
+                }
+            }
+            final long timeoutNanos = deadline - now;
+            if (timeoutNanos >= TimeUnit.MILLISECONDS.toNanos(1)) {
+                // 向下取整，宁可早醒也不晚醒
+                selector.select(TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+            } else if (selector.selectNow() == 0 && timeoutNanos > 0) {
+                LockSupport.parkNanos(Math.min(timeoutNanos, MAX_PARK_NANOS));
+            }
+        }
+
+        private void processSelectedKeys() {
+            final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                final SelectionKey key = it.next();
+                it.remove();
+                final Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        if (datagram) {
+                            fill(connection, System.nanoTime());
+                        } else {
+                            flush(connection);
+                        }
+                    }
+                } catch (IOException e) {
+                    errors++;
+                    close(connection);
+                }
+            }
+        }
+
+        private void read(Connection connection) throws IOException {
+            if (datagram) {
+                readDatagrams(connection);
+                return;
+            }
+            final int n = connection.channel.read(readBuffer.clear());
+            if (n < 0) {
+                throw new IOException("connection closed by server");
+            }
+            bytesIn += n;
+            final long now = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                if (readBuffer.get(i) != PROMPT_END) {
+                    continue;
+                }
+                if (!connection.greeted) {
+                    connection.greeted = true;
+                } else {
+                    complete(connection, now);
+                }
+            }
+            fill(connection, now);
+        }
+
+        /**
+         * 每个数据报是一个响应，读到没有数据报为止
+         */
+        private void readDatagrams(Connection connection) throws IOException {
+            int n;
+            long now = 0;
+            while ((n = connection.channel.read(readBuffer.clear())) > 0) {
+                bytesIn += n;
+                now = System.nanoTime();
+                complete(connection, now);
+            }
+            if (now != 0) {
+                fill(connection, now);
+            }
+        }
+
+        /**
+         * 最早的未完成请求收到了响应
+         */
+        private void complete(Connection connection, long now) {
+            if (connection.outstanding == 0) {
+                return;
+            }
+            histogram.record(now - connection.sendTimes[connection.head]);
+            connection.head = (connection.head + 1) % pipelineDepth;
+            connection.outstanding--;
+            connection.lastProgressNanos = now;
+            responses++;
+        }
+
+        /**
+         * 长时间没有收到响应的连接，认为未完成的数据报已丢失，清空后继续发送
+         */
+        private void expireLostDatagrams(long now) throws IOException {
+            for (Connection connection : connections) {
+                if (connection.outstanding > 0 && now - connection.lastProgressNanos >= DATAGRAM_LOSS_TIMEOUT_NANOS) {
+                    errors += connection.outstanding;
+                    connection.outstanding = 0;
+                    connection.head = 0;
+                    connection.lastProgressNanos = now;
+                    fill(connection, now);
+                }
+            }
+        }
+
+        /**
+         * 在不超过流水线深度的前提下放入到期的请求并发送
+         */
+        private void fill(Connection connection, long now) throws IOException {
+            if (!connection.key.isValid()) {
+                return;
+            }
+            while (connection.outstanding < pipelineDepth && (interval == 0 || connection.nextSendTime <= now)) {
+                if (datagram) {
+                    // 每个请求一个数据报，发送缓冲区满时等 OP_WRITE 再发
+                    final int written = connection.channel.write(request.duplicate());
+                    if (written == 0) {
+                        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    bytesOut += written;
+                } else {
+                    connection.out.put(request.duplicate());
+                }
+                if (connection.outstanding == 0) {
+                    connection.lastProgressNanos = now;
+                }
+                connection.sendTimes[(connection.head + connection.outstanding) % pipelineDepth] =
+                    interval == 0 ? now : connection.nextSendTime;
+                connection.outstanding++;
+                connection.nextSendTime += interval;
+            }
+            if (datagram) {
+                connection.key.interestOps(SelectionKey.OP_READ);
+            } else {
+                flush(connection);
+            }
+        }
+
+        private void flush(Connection connection) throws IOException {
+            final ByteBuffer out = connection.out;
+            if (out.position() == 0) {
+                return;
+            }
+            out.flip();
+            bytesOut += connection.channel.write(out);
+            out.compact();
+            connection.key.interestOps(out.position() > 0
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        private void close(Connection connection) {
+            connection.key.cancel();
+            try {
+                connection.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        void closeAll() {
+            for (Connection connection : connections) {
+                close(connection);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 一个连接的发送状态，未完成请求的发送时间保存在环形数组中，响应按顺序返回
+     */
+    private final class Connection {
+
+        final ByteChannel channel;
+
+        SelectionKey key;
+
+        /**
+         * 已放入但还没写出的请求，容量为 pipelineDepth 个请求，未完成的请求数不超过流水线深度，因此不会溢出
+         */
+        final ByteBuffer out;
+
+        final long[] sendTimes = new long[pipelineDepth];
+
+        int head;
+
+        int outstanding;
+
+        boolean greeted;
+
+        final long offset;
+
+        long nextSendTime;
+
+        /**
+         * 数据报模式下最近一次发出请求（之前没有未完成的请求时）或收到响应的时间，用于判定丢包
+         */
+        long lastProgressNanos;
+
+        Connection(ByteChannel channel, int outCapacity, long offset) {
+            this.channel = channel;
+            // 数据报模式下每个请求直接写出，不经过 out
+            this.out = ByteBuffer.allocateDirect(datagram ? 0 : outCapacity);
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.cnscarb.reactor.loadgen;
+
+import java.util.Locale;
+
+/**
+ * 一次压测的结果，只包含预热之后的统计
+ */
+public class LoadResult {
+
+    private final long durationNanos;
+
+    private final long requests;
+
+    private final long bytesIn;
+
+    private final long bytesOut;
+
+    private final long errors;
+
+    private final LatencyHistogram latency;
+
+    private final ProcessStats process;
+
+    private final long clientCpuNanos;
+
+    LoadResult(long durationNanos, long requests, long bytesIn, long bytesOut, long errors,
+               LatencyHistogram latency, ProcessStats process, long clientCpuNanos) {
+        this.durationNanos = durationNanos;
+        this.requests = requests;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.errors = errors;
+        this.latency = latency;
+        this.process = process;
+        this.clientCpuNanos = clientCpuNanos;
+    }
+
+    /**
+     * 每秒完成的请求数
+     */
+    public double throughput() {
+        return requests * 1e9 / durationNanos;
+    }
+
+    public long requests() {
+        return requests;
+    }
+
+    public long bytesIn() {
+        return bytesIn;
+    }
+
+    public long bytesOut() {
+        return bytesOut;
+    }
+
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     * 请求延迟（纳秒）
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * 整个 JVM 进程消耗的 CPU 时间，不支持时为 -1
+     */
+    public long processCpuNanos() {
+        return process.cpuNanos;
+    }
+
+    /**
+     * 压测线程消耗的 CPU 时间
+     */
+    public long clientCpuNanos() {
+        return clientCpuNanos;
+    }
+
+    /**
+     * 服务端和压测客户端在同一进程中时，服务端消耗的 CPU 时间，即进程 CPU 时间减去压测线程的 CPU 时间
+     */
+    public long serverCpuNanos() {
+        return process.cpuNanos < 0 ? -1 : Math.max(0, process.cpuNanos - clientCpuNanos);
+    }
+
+    public long gcCount() {
+        return process.gcCount;
+    }
+
+    public long gcMillis() {
+        return process.gcMillis;
+    }
+
+    /**
+     * 与 {@link #toRow(String)} 对应的表头
+     */
+    public static String header() {
+        return String.format(Locale.ROOT, "%-20s %12s %10s %10s %10s %10s %10s %9s %9s %10s %6s %8s",
+            "mode", "req/s", "MB/s in", "p50(us)", "p99(us)", "p999(us)", "max(us)",
+            "srv cpu", "cli cpu", "cpu us/req", "gc", "gc ms");
+    }
+
+    /**
+     * 一行汇总：吞吐量、延迟百分位、服务端和客户端平均占用的 CPU 核数、每个请求消耗的服务端 CPU 时间、GC 次数和耗时
+     */
+    public String toRow(String mode) {
+        final double seconds = durationNanos / 1e9;
+        final long serverCpu = serverCpuNanos();
+        return String.format(Locale.ROOT, "%-20s %12.0f %10.2f %10.1f %10.1f %10.1f %10.1f %9s %9.2f %10s %6d %8d",
+            mode, throughput(), bytesIn / seconds / (1024 * 1024),
+            micros(latency.valueAtPercentile(50)), micros(latency.valueAtPercentile(99)),
+            micros(latency.valueAtPercentile(99.9)), micros(latency.max()),
+            serverCpu < 0 ? "n/a" : String.format(Locale.ROOT, "%.2f", serverCpu / 1e9 / seconds),
+            clientCpuNanos / 1e9 / seconds,
+            serverCpu < 0 || requests == 0 ? "n/a" : String.format(Locale.ROOT, "%.2f", serverCpu / 1e3 / requests),
+            gcCount(), gcMillis())
+            + (errors > 0 ? "  errors=" + errors : "");
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1e3;
+    }
+}
@@ -0,0 +1,262 @@
+package com.cnscarb.reactor.loadgen;
+
+import com.cnscarb.reactor.bio.BioServer;
+import com.cnscarb.reactor.reactor.DatagramBootstrap;
+import com.cnscarb.reactor.reactor.MultiReactorBootstrap;
+import com.cnscarb.reactor.reactor.MultiThreadNioHandler;
+import com.cnscarb.reactor.reactor.NioHandler;
+import com.cnscarb.reactor.reactor.Reactor;
+import com.cnscarb.reactor.reactor.ReactorGroup;
+import com.cnscarb.reactor.reactor.StreamingNioHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在同一个 JVM 中依次启动各种模式的服务端，用 {@link LoadGenerator} 通过回环地址压测，逐行打印结果
+ * <p>
+ * 每种模式使用不同的端口，测完后不关闭，空闲的服务端不影响后续模式的结果。
+ * 服务端和压测线程在同一进程中，服务端 CPU 为进程 CPU 减去压测线程的 CPU，GC 统计包含压测客户端。
+ * <pre>
+ * java com.cnscarb.reactor.loadgen.LoadTest --modes bio,single,multi-thread,multi-reactor \
+ *     --connections 64 --threads 2 --size 64 --depth 1 --rate 0 --warmup 5 --duration 10 --reactors 4
+ * </pre>
+ * datagram、datagram-reuse-port 模式使用 UDP，压测客户端也通过 UDP 发送请求。
+ * --transports tcp,unix 让每种模式分别监听 TCP 端口和 Unix 域套接字，对比同一主机上两种传输方式的延迟和 CPU 消耗。
+ * 指定 --host 或 --socket 时不启动服务端，只压测 --host:--port 或者 Unix 域套接字 --socket 上已经运行的服务端
+ */
+public class LoadTest {
+
+    /**
+     * 服务端模式
+     */
+    enum Mode {
+        BIO {
+            @Override
+            void start(SocketAddress address, int reactors) {
+                startBio(new BioServer(tcpPort(address)));
+            }
+        },
+        VIRTUAL_BIO {
+            @Override
+            void start(SocketAddress address, int reactors) {
+                startBio(new BioServer(tcpPort(address), true, Integer.MAX_VALUE));
+            }
+        },
+        SINGLE {
+            @Override
+            void start(SocketAddress address, int reactors) throws IOException {
+                new Reactor(address, NioHandler::new).startThread();
+            }
+        },
+        MULTI_THREAD {
+            @Override
+            void start(SocketAddress address, int reactors) throws IOException {
+                new Reactor(address, MultiThreadNioHandler::new).startThread();
+            }
+        },
+        STREAMING {
+            @Override
+            void start(SocketAddress address, int reactors) throws IOException {
+                new Reactor(address, StreamingNioHandler::new).startThread();
+            }
+        },
+        MULTI_REACTOR {
+            @Override
+            void start(SocketAddress address, int reactors) throws IOException {
+                new MultiReactorBootstrap(address, new ReactorGroup(1), new ReactorGroup(reactors), NioHandler::new);
+            }
+        },
+        REUSE_PORT {
+            @Override
+            void start(SocketAddress address, int reactors) throws IOException {
+                final ReactorGroup reactorGroup = new ReactorGroup(reactors);
+                new MultiReactorBootstrap(reactorGroup, reactorGroup, NioHandler::new)
+                    .reusePort(true)
+                    .acceptorHandlesIo(true)
+                    .bind(address);
+            }
+        },
+        DATAGRAM {
+            @Override
+            void start(SocketAddress address, int reactors) throws IOException {
+                new DatagramBootstrap(new ReactorGroup(1)).bind(udpAddress(address));
+            }
+
+            @Override
+            boolean datagram() {
+                return true;
+            }
+        },
+        DATAGRAM_REUSE_PORT {
+            @Override
+            void start(SocketAddress address, int reactors) throws IOException {
+                new DatagramBootstrap(new ReactorGroup(reactors)).reusePort(true).bind(udpAddress(address));
+            }
+
+            @Override
+            boolean datagram() {
+                return true;
+            }
+        };
+
+        /**
+         * 启动服务端，可能在返回之后才开始监听
+         *
+         * @param address  TCP 地址或者 Unix 域套接字地址
+         * @param reactors 多 Reactor 模式下处理 IO 的 Reactor 数
+         * @throws UnsupportedOperationException 该模式不支持这种地址
+         */
+        abstract void start(SocketAddress address, int reactors) throws IOException;
+
+        /**
+         * 是否是 UDP 服务端，压测客户端也使用 UDP，使用 tcp 传输方式对应的端口
+         */
+        boolean datagram() {
+            return false;
+        }
+
+        /**
+         * 命令行中的名字，例如 multi-reactor
+         */
+        String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+
+        static Mode of(String label) {
+            return valueOf(label.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+
+        /**
+         * BIO 模式基于 {@link java.net.ServerSocket}，只支持 TCP
+         */
+        private static int tcpPort(SocketAddress address) {
+            if (!(address instanceof InetSocketAddress)) {
+                throw new UnsupportedOperationException("BIO server only supports TCP");
+            }
+            return ((InetSocketAddress) address).getPort();
+        }
+
+        /**
+         * 数据报模式只支持 UDP
+         */
+        private static SocketAddress udpAddress(SocketAddress address) {
+            if (!(address instanceof InetSocketAddress)) {
+                throw new UnsupportedOperationException("datagram server only supports UDP");
+            }
+            return address;
+        }
+
+        /**
+         * 不打印监听端口，避免混进结果表格
+         */
+        private static void startBio(BioServer server) {
+            final Thread thread = new Thread(server.quiet(true), "bio-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final CommandLine options = CommandLine.parse(args);
+        final int port = options.getInt("port", 18080);
+        final int reactors = options.getInt("reactors", 4);
+        final int connections = options.getInt("connections", 64);
+        final int threads = options.getInt("threads", 2);
+        final int size = options.getInt("size", 64);
+        final int depth = options.getInt("depth", 1);
+        final long rate = options.getLong("rate", 0);
+        final long warmup = options.getLong("warmup", 5);
+        final long duration = options.getLong("duration", 10);
+
+        System.out.printf(Locale.ROOT, "connections=%d threads=%d size=%d depth=%d rate=%s warmup=%ds duration=%ds cpus=%d%n",
+            connections, threads, size, depth, rate > 0 ? rate + "/s" : "closed-loop", warmup, duration,
+            Runtime.getRuntime().availableProcessors());
+        System.out.println(LoadResult.header());
+
+        final String host = options.get("host");
+        final String socket = options.get("socket");
+        if (host != null || socket != null) {
+            final SocketAddress address = socket != null
+                ? UnixDomainSocketAddress.of(socket) : new InetSocketAddress(host, port);
+            final LoadResult result = newGenerator(address, connections, threads, size,
+                depth, rate, warmup, duration).run();
+            System.out.println(result.toRow(socket != null ? socket : host + ":" + port));
+            CommandLine.exit(0);
+        }
+
+        final String[] modes = options.get("modes", "bio,single,multi-thread,multi-reactor").split(",");
+        final String[] transports = options.get("transports", "tcp").split(",");
+        int next = 0;
+        for (String modeLabel : modes) {
+            final Mode mode = Mode.of(modeLabel);
+            for (String transport : transports) {
+                final String label = transports.length == 1 ? mode.label() : mode.label() + "/" + transport;
+                final SocketAddress address = address(transport.trim(), port + next++);
+                try {
+                    mode.start(address, reactors);
+                } catch (UnsupportedOperationException e) {
+                    System.out.printf(Locale.ROOT, "%-20s %s%n", label, e.getMessage());
+                    continue;
+                }
+                if (!mode.datagram()) {
+                    awaitListening(address);
+                }
+                final LoadResult result = newGenerator(address, connections, threads, size, depth, rate, warmup, duration)
+                    .datagram(mode.datagram())
+                    .run();
+                System.out.println(result.toRow(label));
+            }
+        }
+        CommandLine.exit(0);
+    }
+
+    /**
+     * tcp 使用回环地址上的端口，unix 使用临时目录中以端口命名的套接字文件
+     */
+    private static SocketAddress address(String transport, int port) {
+        switch (transport) {
+            case "tcp":
+                return new InetSocketAddress("127.0.0.1", port);
+            case "unix":
+                return UnixDomainSocketAddress.of(Path.of(System.getProperty("java.io.tmpdir"), "reactor-" + port + ".sock"));
+            default:
+                throw new IllegalArgumentException("unknown transport: " + transport);
+        }
+    }
+
+    private static LoadGenerator newGenerator(SocketAddress address, int connections, int threads, int size,
+                                              int depth, long rate, long warmup, long duration) {
+        return new LoadGenerator(address)
+            .connections(connections)
+            .threads(threads)
+            .requestSize(size)
+            .pipelineDepth(depth)
+            .rate(rate)
+            .warmup(warmup, TimeUnit.SECONDS)
+            .duration(duration, TimeUnit.SECONDS);
+    }
+
+    /**
+     * BIO 模式在另一个线程中绑定端口，等到能连上为止
+     */
+    private static void awaitListening(SocketAddress address) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                SocketChannel.open(address).close();
+                return;
+            } catch (IOException e) {
+                if (attempt >= 50) {
+                    throw e;
+                }
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.cnscarb.reactor.loadgen;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * 当前 JVM 进程的 CPU 时间和 GC 次数、耗时的快照，两次快照相减得到一段时间内的消耗
+ */
+final class ProcessStats {
+
+    /**
+     * 进程累计的 CPU 时间（纳秒），JVM 不支持时为 -1
+     */
+    final long cpuNanos;
+
+    final long gcCount;
+
+    final long gcMillis;
+
+    private ProcessStats(long cpuNanos, long gcCount, long gcMillis) {
+        this.cpuNanos = cpuNanos;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    static ProcessStats snapshot() {
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // 不可用时返回 -1
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        return new ProcessStats(processCpuNanos(), gcCount, gcMillis);
+    }
+
+    private static long processCpuNanos() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * 从 start 到当前快照的消耗
+     */
+    ProcessStats since(ProcessStats start) {
+        return new ProcessStats(cpuNanos < 0 || start.cpuNanos < 0 ? -1 : cpuNanos - start.cpuNanos,
+            gcCount - start.gcCount, gcMillis - start.gcMillis);
+    }
+}
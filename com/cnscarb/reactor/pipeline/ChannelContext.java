@@ -0,0 +1,74 @@
+package com.cnscarb.reactor.pipeline;
+
+import com.cnscarb.reactor.buffer.PooledBufferAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 阶段在管道中的上下文，用于把数据传给相邻的阶段
+ */
+public class ChannelContext {
+
+    private final ChannelPipeline pipeline;
+
+    /**
+     * 阶段在管道中的位置
+     */
+    private final int index;
+
+    final ChannelStage stage;
+
+    ChannelContext(ChannelPipeline pipeline, int index, ChannelStage stage) {
+        this.pipeline = pipeline;
+        this.index = index;
+        this.stage = stage;
+    }
+
+    /**
+     * 把入站数据传给下一个阶段。已经是最后一个阶段时丢弃
+     */
+    public void fireChannelRead(ByteBuffer msg) throws IOException {
+        final ChannelContext next = pipeline.context(index + 1);
+        if (next != null) {
+            next.stage.channelRead(next, msg);
+        }
+    }
+
+    /**
+     * 把出站数据传给上一个阶段。已经是第一个阶段时写入连接的发送队列
+     */
+    public void write(ByteBuffer msg) throws IOException {
+        final ChannelContext prev = pipeline.context(index - 1);
+        if (prev != null) {
+            prev.stage.write(prev, msg);
+        } else {
+            pipeline.sink.write(msg);
+        }
+    }
+
+    /**
+     * 借出发送队列的队尾 Buffer，出站数据可以直接编码到其中，省去临时 Buffer 和一次拷贝。
+     * 从 position 开始写入，写完后把 [写入前的 position, 写入后的 position) 设为 [position, limit)，再用 {@link #write} 写出，
+     * 到达管道头部时只提交，不再拷贝。写出之前不能写出其他数据；出站方向上的阶段要先转发它，再写自己的数据，
+     * 例如 {@link PromptEncoderStage}。借出后不写入可以直接放弃
+     */
+    public ByteBuffer reserve(int minWritable) {
+        return pipeline.sink.reserve(minWritable);
+    }
+
+    /**
+     * 发送完已有的数据后关闭连接
+     */
+    public void close() {
+        pipeline.sink.closeAfterFlush();
+    }
+
+    public PooledBufferAllocator allocator() {
+        return pipeline.sink.allocator();
+    }
+
+    public ChannelPipeline pipeline() {
+        return pipeline;
+    }
+}
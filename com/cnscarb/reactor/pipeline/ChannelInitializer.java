@@ -0,0 +1,10 @@
+package com.cnscarb.reactor.pipeline;
+
+/**
+ * 为新连接组装管道，每个连接调用一次
+ */
+@FunctionalInterface
+public interface ChannelInitializer {
+
+    void initChannel(ChannelPipeline pipeline);
+}
@@ -0,0 +1,67 @@
+package com.cnscarb.reactor.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 连接的处理管道，由一串 {@link ChannelStage} 组成
+ * <p>
+ * 例如：行解码器 -> 大写转换处理器，出站方向再经过提示符编码器。新增分帧、压缩、统计等功能只需要加入新的阶段，不用修改 Handler
+ */
+public class ChannelPipeline {
+
+    final ChannelSink sink;
+
+    private final List<ChannelContext> contexts = new ArrayList<>();
+
+    public ChannelPipeline(ChannelSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 在管道尾部加入一个阶段
+     */
+    public ChannelPipeline addLast(ChannelStage stage) {
+        final ChannelContext ctx = new ChannelContext(this, contexts.size(), stage);
+        contexts.add(ctx);
+        stage.handlerAdded(ctx);
+        return this;
+    }
+
+    ChannelContext context(int index) {
+        return index >= 0 && index < contexts.size() ? contexts.get(index) : null;
+    }
+
+    /**
+     * 从第一个阶段开始处理入站数据
+     */
+    public void fireChannelRead(ByteBuffer msg) throws IOException {
+        if (!contexts.isEmpty()) {
+            final ChannelContext head = contexts.get(0);
+            head.stage.channelRead(head, msg);
+        }
+    }
+
+    /**
+     * 从最后一个阶段开始处理出站数据
+     */
+    public void write(ByteBuffer msg) throws IOException {
+        if (contexts.isEmpty()) {
+            sink.write(msg);
+        } else {
+            final ChannelContext tail = contexts.get(contexts.size() - 1);
+            tail.stage.write(tail, msg);
+        }
+    }
+
+    /**
+     * 连接关闭时通知所有阶段释放资源
+     */
+    public void fireHandlerRemoved() {
+        for (ChannelContext ctx : contexts) {
+            ctx.stage.handlerRemoved(ctx);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cnscarb.reactor.pipeline;
+
+import com.cnscarb.reactor.buffer.PooledBufferAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 管道头部连接的传输层，由 Handler 实现
+ */
+public interface ChannelSink {
+
+    /**
+     * 将出站数据拷贝到连接的发送队列，不改变 msg 的状态
+     */
+    void write(ByteBuffer msg) throws IOException;
+
+    /**
+     * 发送队列队尾至少还能写入 minWritable 字节的 Buffer，见 {@link ChannelContext#reserve(int)}
+     */
+    ByteBuffer reserve(int minWritable);
+
+    /**
+     * 发送完已有的数据后关闭连接
+     */
+    void closeAfterFlush();
+
+    /**
+     * 连接所在 Reactor 的 Buffer 分配器
+     */
+    PooledBufferAllocator allocator();
+}
@@ -0,0 +1,43 @@
+package com.cnscarb.reactor.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 管道中的一个处理阶段，例如解码器、业务处理器、编码器
+ * <p>
+ * 入站数据从管道头部流向尾部（{@link #channelRead}），出站数据从尾部流向头部（{@link #write}），默认实现直接传给下一个阶段。
+ * <p>
+ * 阶段之间传递的 ByteBuffer 是借用的视图，只在调用期间有效：接收方可以读取 [position, limit) 的内容并移动 position，
+ * 但不能保存引用。需要保留的数据必须自行拷贝。这样解码器可以把累积 Buffer 中的一段直接交给下一个阶段，无需拷贝
+ * <p>
+ * 每个连接有自己的管道和阶段实例，只在该连接的 Reactor 线程中调用，不需要同步
+ */
+public interface ChannelStage {
+
+    /**
+     * 阶段加入管道时调用
+     */
+    default void handlerAdded(ChannelContext ctx) {
+    }
+
+    /**
+     * 连接关闭时调用，释放阶段持有的资源
+     */
+    default void handlerRemoved(ChannelContext ctx) {
+    }
+
+    /**
+     * 处理入站数据
+     */
+    default void channelRead(ChannelContext ctx, ByteBuffer msg) throws IOException {
+        ctx.fireChannelRead(msg);
+    }
+
+    /**
+     * 处理出站数据
+     */
+    default void write(ChannelContext ctx, ByteBuffer msg) throws IOException {
+        ctx.write(msg);
+    }
+}
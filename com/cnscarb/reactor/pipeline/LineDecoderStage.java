@@ -0,0 +1,40 @@
+package com.cnscarb.reactor.pipeline;
+
+import com.cnscarb.reactor.codec.LineFrameDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 行解码阶段：从累积 Buffer 中切分出所有完整的行，把每一行（不含换行符）的视图交给下一个阶段
+ * <p>
+ * 剩余的半行留在累积 Buffer 中，由 Handler 保留到下次读取。空行或 ctrl+c 关闭连接
+ */
+public class LineDecoderStage implements ChannelStage {
+
+    private final LineFrameDecoder frameDecoder;
+
+    public LineDecoderStage(int maxFrameLength) {
+        this.frameDecoder = new LineFrameDecoder(maxFrameLength);
+    }
+
+    @Override
+    public void channelRead(ChannelContext ctx, ByteBuffer cumulation) throws IOException {
+        final int limit = cumulation.limit();
+        int delimiter;
+        while ((delimiter = frameDecoder.findDelimiter(cumulation)) >= 0) {
+            final int start = cumulation.position();
+            final int end = LineFrameDecoder.frameEnd(cumulation, delimiter);
+            if (end == start || cumulation.get(delimiter) == LineFrameDecoder.ETX) {
+                // 用户只敲了个回车，或者输入了 ctrl+c，发送完已有的响应后断开连接
+                cumulation.position(limit);
+                ctx.close();
+                return;
+            }
+            // 只把当前行暴露给下一个阶段
+            cumulation.limit(end);
+            ctx.fireChannelRead(cumulation);
+            cumulation.limit(limit).position(delimiter + 1);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.cnscarb.reactor.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 出站编码阶段：在每个响应后面加上提示符
+ */
+public class PromptEncoderStage implements ChannelStage {
+
+    /**
+     * 共享的只读提示符，写出时不会改变其状态
+     */
+    private final ByteBuffer prompt;
+
+    public PromptEncoderStage(ByteBuffer prompt) {
+        this.prompt = prompt;
+    }
+
+    @Override
+    public void write(ChannelContext ctx, ByteBuffer msg) throws IOException {
+        ctx.write(msg);
+        ctx.write(prompt);
+    }
+}
@@ -0,0 +1,22 @@
+package com.cnscarb.reactor.pipeline;
+
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 业务处理阶段：将一行内容转换成大写后写出
+ */
+public class UpperCaseStage implements ChannelStage {
+
+    @Override
+    public void channelRead(ChannelContext ctx, ByteBuffer frame) throws IOException {
+        // 直接转换到发送队列的队尾，不经过临时 Buffer
+        final ByteBuffer response = ctx.reserve(frame.remaining() * UpperCaseCodec.MAX_EXPANSION);
+        final int start = response.position();
+        UpperCaseCodec.encode(frame, response);
+        response.limit(response.position()).position(start);
+        ctx.write(response);
+    }
+}
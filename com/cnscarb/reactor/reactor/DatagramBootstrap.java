@@ -0,0 +1,91 @@
+package com.cnscarb.reactor.reactor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UDP 服务端，由 {@link DatagramHandler} 处理数据报
+ * <p>
+ * 默认只打开一个 DatagramChannel，由 ReactorGroup 中的一个 Reactor 处理。开启 SO_REUSEPORT 时为每个 Reactor
+ * 打开一个绑定同一端口的 DatagramChannel，内核按来源地址把数据报分散到各个 Channel 上，由多个 Reactor 并行处理
+ */
+public class DatagramBootstrap {
+
+    private final ReactorGroup reactorGroup;
+
+    /**
+     * 已绑定的 DatagramChannel。开启 SO_REUSEPORT 时每个 Reactor 一个，否则只有一个
+     */
+    private final List<DatagramChannel> channels = new ArrayList<>();
+
+    /**
+     * 是否为每个 Reactor 打开一个设置了 SO_REUSEPORT 的 DatagramChannel
+     */
+    private boolean reusePort;
+
+    /**
+     * 接收缓冲区大小，0 表示使用操作系统默认值。突发流量超过接收缓冲区时多出的数据报会被内核丢弃
+     */
+    private int receiveBufferSize;
+
+    public DatagramBootstrap(ReactorGroup reactorGroup) {
+        this.reactorGroup = reactorGroup;
+    }
+
+    public DatagramBootstrap reusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    public DatagramBootstrap receiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    public DatagramBootstrap bind(int port) throws IOException {
+        return bind(new InetSocketAddress(port));
+    }
+
+    /**
+     * 绑定地址，开始接收数据报
+     */
+    public DatagramBootstrap bind(SocketAddress address) throws IOException {
+        if (reusePort) {
+            for (Reactor reactor : reactorGroup.children) {
+                bind(address, reactor);
+            }
+        } else {
+            bind(address, reactorGroup.next());
+        }
+        return this;
+    }
+
+    private void bind(SocketAddress address, Reactor reactor) throws IOException {
+        final DatagramChannel channel = DatagramChannel.open();
+        try {
+            if (reusePort) {
+                if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    throw new UnsupportedOperationException("SO_REUSEPORT is not supported for " + address);
+                }
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            if (receiveBufferSize > 0) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            }
+            channel.bind(address);
+            channel.configureBlocking(false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channels.add(channel);
+        // 在 Reactor 线程中注册，首次提交任务时启动 Reactor 线程
+        reactor.register(channel, SelectionKey.OP_READ, new DatagramHandler(reactor, channel));
+    }
+}
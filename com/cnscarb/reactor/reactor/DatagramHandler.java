@@ -0,0 +1,186 @@
+package com.cnscarb.reactor.reactor;
+
+import com.cnscarb.reactor.codec.LineFrameDecoder;
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+import com.cnscarb.reactor.journal.Journal;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+
+/**
+ * UDP 处理器，每个数据报是一个请求，回复其内容的大写形式，不需要建立连接，也没有每个连接的状态
+ * <p>
+ * UDP 的源地址可以伪造，回复不能比请求长，否则服务端会成为反射放大攻击的放大器：回复原样带上请求末尾的换行符，
+ * 不额外追加；大写后变长（个别非 ASCII 字符）、回复放不进请求长度的数据报直接丢弃。
+ * 超过 {@link #MAX_DATAGRAM_SIZE} 的数据报也直接丢弃，不回复截断后的内容。丢弃的数据报计入
+ * {@link ReactorMetrics.Snapshot#droppedDatagrams()}
+ * <p>
+ * 每次可读时连续接收最多 {@link #MAX_DATAGRAMS_PER_READ} 个数据报，逐个转换后暂存回复，接收完一批再集中发送。
+ * 接收 Buffer 和回复 Buffer 都从 Reactor 的池化分配器中借出。发送缓冲区满时暂停接收，
+ * 只关注 OP_WRITE，发完积压的回复再恢复，期间到达的数据报由内核按接收缓冲区大小丢弃
+ */
+public class DatagramHandler implements SelectionHandler {
+
+    /**
+     * 每次可读时最多接收的数据报数
+     */
+    static final int MAX_DATAGRAMS_PER_READ = Integer.getInteger("reactor.maxDatagramsPerRead", 64);
+
+    /**
+     * 数据报的最大长度，超过的整个丢弃
+     */
+    static final int MAX_DATAGRAM_SIZE = NioHandler.MAX_INPUT_BUFFER_SIZE;
+
+    final Reactor reactor;
+
+    private final DatagramChannel channel;
+
+    /**
+     * 本批待发送的回复及其目的地址，[sent, count) 是还没发出的部分，只在 Reactor 线程中访问
+     */
+    private final SocketAddress[] replyAddresses = new SocketAddress[MAX_DATAGRAMS_PER_READ];
+    private final ByteBuffer[] replies = new ByteBuffer[MAX_DATAGRAMS_PER_READ];
+    private int sent;
+    private int count;
+
+    /**
+     * 发送失败通常只与某个目的地址有关，例如地址不可达，大量客户端出错时限制打印频率
+     */
+    private final ErrorLog sendErrorLog = new ErrorLog();
+
+    public DatagramHandler(Reactor reactor, DatagramChannel channel) {
+        this.reactor = reactor;
+        this.channel = channel;
+    }
+
+    @Override
+    public void handle(SelectionKey key) {
+        if (key.isWritable() && !flush()) {
+            // 仍有积压的回复，继续等待 OP_WRITE
+            return;
+        }
+        if (key.isReadable()) {
+            try {
+                receive();
+            } catch (IOException e) {
+                // 接收失败不关闭监听的 Channel，已经收到的数据报照常回复
+                System.err.println(reactor.name() + ": failed to receive datagram: " + e);
+            }
+            flush();
+        }
+        key.interestOps(sent < count ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * 连续接收一批数据报，转换成回复暂存起来。Reactor 设置了请求日志时，每个数据报和它的回复追加一条记录，
+     * 连接编号见 {@link Reactor#datagramConnectionId()}
+     */
+    private void receive() throws IOException {
+        final long start = System.nanoTime();
+        final Journal journal = reactor.journal();
+        final ByteBuffer input = reactor.allocator.allocate(MAX_DATAGRAM_SIZE + 1);
+        try {
+            while (count < MAX_DATAGRAMS_PER_READ) {
+                // 多接收一个字节，超过最大长度的数据报会被内核截断，收到的长度超过 MAX_DATAGRAM_SIZE 就说明被截断了
+                input.clear().limit(MAX_DATAGRAM_SIZE + 1);
+                final SocketAddress address = channel.receive(input);
+                if (address == null) {
+                    // 接收缓冲区已空
+                    break;
+                }
+                final long received = journal != null ? System.nanoTime() : 0;
+                input.flip();
+                reactor.metrics.recordRead(input.remaining());
+                if (input.remaining() > MAX_DATAGRAM_SIZE) {
+                    reactor.metrics.droppedDatagrams++;
+                    continue;
+                }
+                final ByteBuffer reply = process(input);
+                if (reply == null) {
+                    reactor.metrics.droppedDatagrams++;
+                    continue;
+                }
+                if (journal != null) {
+                    // process 之后 input 的 position 是去掉换行符后的请求末尾
+                    journal.append(reactor.datagramConnectionId(), System.nanoTime() - received,
+                        input, 0, input.position(), reply, 0, reply.limit());
+                }
+                replyAddresses[count] = address;
+                replies[count++] = reply;
+            }
+        } finally {
+            reactor.allocator.release(input);
+        }
+        if (count > 0) {
+            reactor.metrics.recordProcess(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 将数据报内容（去掉末尾的换行符）转换为大写，后面原样跟上请求末尾的换行符。
+     * 处理后 datagram 的 position 是去掉换行符后的请求末尾
+     *
+     * @return 回复，不会比请求长；空数据报，或者大写后变长、放不下时返回 null，调用方丢弃该数据报
+     */
+    private ByteBuffer process(ByteBuffer datagram) {
+        final int length = datagram.limit();
+        if (length == 0) {
+            // 空数据报没有内容可回复，而且发送空数据报的返回值 0 无法与发送缓冲区已满区分
+            return null;
+        }
+        int end = length;
+        while (end > datagram.position()
+            && (datagram.get(end - 1) == LineFrameDecoder.LF || datagram.get(end - 1) == LineFrameDecoder.CR)) {
+            end--;
+        }
+        datagram.limit(end);
+        // 回复最多与请求一样长，池化分配器按页大小给出的多余容量不用
+        final ByteBuffer reply = reactor.allocator.allocate(length);
+        reply.limit(length);
+        final boolean encoded = UpperCaseCodec.encode(datagram, reply);
+        datagram.limit(length);
+        if (!encoded || reply.remaining() < length - end) {
+            reactor.allocator.release(reply);
+            return null;
+        }
+        for (int i = end; i < length; i++) {
+            reply.put(datagram.get(i));
+        }
+        return reply.flip();
+    }
+
+    /**
+     * 发送暂存的回复，每个回复一个数据报。发送失败时只丢弃这一个回复，继续发送其余的
+     *
+     * @return 全部发出返回 true，发送缓冲区已满返回 false
+     */
+    private boolean flush() {
+        while (sent < count) {
+            final ByteBuffer reply = replies[sent];
+            final int written;
+            try {
+                written = channel.send(reply, replyAddresses[sent]);
+            } catch (IOException e) {
+                sendErrorLog.log(reactor.name() + ": failed to send datagram to " + replyAddresses[sent], e);
+                releaseReply(sent++);
+                continue;
+            }
+            if (written == 0) {
+                return false;
+            }
+            reactor.metrics.recordWrite(written);
+            releaseReply(sent++);
+        }
+        sent = count = 0;
+        return true;
+    }
+
+    private void releaseReply(int index) {
+        reactor.allocator.release(replies[index]);
+        replies[index] = null;
+        replyAddresses[index] = null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cnscarb.reactor.reactor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限制频率的错误日志，每秒最多打印一次，其余的只计数。
+ * 例如文件描述符耗尽时每轮 select 都会 accept 失败，逐条打印会刷屏。非线程安全，每个使用方在自己的 Reactor 线程中使用
+ */
+final class ErrorLog {
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private long lastLogNanos;
+
+    private boolean logged;
+
+    /**
+     * 上次打印之后被忽略的错误数
+     */
+    private int suppressed;
+
+    void log(String message, Throwable cause) {
+        final long now = System.nanoTime();
+        if (logged && now - lastLogNanos < INTERVAL_NANOS) {
+            suppressed++;
+            return;
+        }
+        System.err.println(message + ": " + cause
+            + (suppressed > 0 ? " (" + suppressed + " similar errors suppressed)" : ""));
+        logged = true;
+        lastLogNanos = now;
+        suppressed = 0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cnscarb.reactor.reactor;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 为新的客户端连接创建 Handler，代替在每次 accept 时反射调用构造方法
+ * <p>
+ * 在处理该连接的 Reactor 线程中调用，例如 {@code NioHandler::new}
+ */
+@FunctionalInterface
+public interface HandlerFactory {
+
+    NioHandler newHandler(Reactor reactor, SocketChannel socket) throws IOException;
+
+    /**
+     * 创建的 Handler 是否把请求和响应写入请求日志，不支持的在设置请求日志时直接拒绝，见 {@link Reactor#journal}
+     */
+    default boolean supportsJournal() {
+        return true;
+    }
+}
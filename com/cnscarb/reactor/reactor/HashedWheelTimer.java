@@ -0,0 +1,190 @@
+package com.cnscarb.reactor.reactor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轮定时器，由 Reactor 事件循环驱动，用于连接的读、写、空闲超时
+ * <p>
+ * 时间轮分成若干个槽，每个槽是一个双向链表，每隔一个 tick 处理一个槽。定时任务按到期的 tick 放入对应的槽，
+ * 超过一圈的记录剩余圈数。添加和取消都是 O(1)，同一个 tick 到期的任务一次批量执行，十万个连接也不需要十万个 ScheduledExecutor 任务。
+ * <p>
+ * 事件循环用 {@link #nanosToNextTick(long)} 计算 select 的超时时间，select 返回后调用 {@link #expireTimeouts(long)}。
+ * 只在 Reactor 线程中使用，其他线程需要通过 {@link Reactor#execute(Runnable)} 提交
+ */
+public class HashedWheelTimer {
+
+    /**
+     * 每个 tick 的时长
+     */
+    private final long tickNanos;
+
+    /**
+     * 每个槽链表的头尾节点，槽数为 2 的幂
+     */
+    private final Timeout[] heads;
+    private final Timeout[] tails;
+
+    private final int mask;
+
+    /**
+     * 时间轮的起始时间
+     */
+    private final long startTime;
+
+    /**
+     * 已经处理完的 tick 数
+     */
+    private long tick;
+
+    /**
+     * 等待到期的任务数
+     */
+    private int pendingTimeouts;
+
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (wheelSize <= 0 || (wheelSize & -wheelSize) != wheelSize) {
+            throw new IllegalArgumentException("wheelSize must be a power of two: " + wheelSize);
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.heads = new Timeout[wheelSize];
+        this.tails = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * 创建一个定时任务，之后可以用 {@link #schedule(Timeout, long, long)} 反复调度，不必每次创建新对象
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(task);
+    }
+
+    /**
+     * 在 now + delayNanos 之后执行定时任务。已经在等待中的任务会先取消再重新调度
+     */
+    public void schedule(Timeout timeout, long delayNanos, long now) {
+        cancel(timeout);
+        final long deadline = now + delayNanos - startTime;
+        // 到期时间之后的第一个 tick，至少是下一个 tick
+        final long deadlineTick = Math.max((deadline + tickNanos - 1) / tickNanos, tick + 1);
+        timeout.remainingRounds = (int) Math.min((deadlineTick - tick - 1) / heads.length, Integer.MAX_VALUE);
+        final int bucket = (int) (deadlineTick & mask);
+        timeout.bucket = bucket;
+        timeout.prev = tails[bucket];
+        timeout.next = null;
+        if (tails[bucket] == null) {
+            heads[bucket] = timeout;
+        } else {
+            tails[bucket].next = timeout;
+        }
+        tails[bucket] = timeout;
+        pendingTimeouts++;
+    }
+
+    /**
+     * 取消定时任务，O(1)
+     */
+    public void cancel(Timeout timeout) {
+        final int bucket = timeout.bucket;
+        if (bucket < 0) {
+            return;
+        }
+        if (timeout.prev == null) {
+            heads[bucket] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next == null) {
+            tails[bucket] = timeout.prev;
+        } else {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        pendingTimeouts--;
+    }
+
+    /**
+     * 距离下一个 tick 的纳秒数，没有等待中的任务时返回 -1，事件循环可以一直阻塞
+     */
+    public long nanosToNextTick(long now) {
+        if (pendingTimeouts == 0) {
+            return -1;
+        }
+        return Math.max(0, startTime + (tick + 1) * tickNanos - now);
+    }
+
+    /**
+     * 处理到 now 为止的所有 tick，执行到期的任务
+     */
+    public void expireTimeouts(long now) {
+        while (startTime + (tick + 1) * tickNanos <= now) {
+            tick++;
+            if (pendingTimeouts > 0) {
+                expireBucket((int) (tick & mask));
+            }
+        }
+    }
+
+    /**
+     * 先把到期的任务全部从槽中摘下，再依次执行。执行过程中重新调度的任务不会在本轮被误处理
+     */
+    private void expireBucket(int bucket) {
+        Timeout expired = null;
+        Timeout timeout = heads[bucket];
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                cancel(timeout);
+                timeout.next = expired;
+                expired = timeout;
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+        while (expired != null) {
+            final Timeout next = expired.next;
+            expired.next = null;
+            try {
+                expired.task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            expired = next;
+        }
+    }
+
+    public int pendingTimeouts() {
+        return pendingTimeouts;
+    }
+
+    /**
+     * 定时任务，同时是时间轮槽链表中的节点
+     */
+    public static final class Timeout {
+        final Runnable task;
+
+        /**
+         * 所在的槽，-1 表示没有在等待
+         */
+        int bucket = -1;
+
+        /**
+         * 到期前还要经过的圈数。用 int 减小每个定时任务的内存，按 100ms 的 tick 计算也能表示几百年
+         */
+        int remainingRounds;
+
+        Timeout prev;
+        Timeout next;
+
+        Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        public boolean isPending() {
+            return bucket >= 0;
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.cnscarb.reactor.reactor;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MultiReactorBootstrap {
     /**
@@ -20,47 +22,268 @@ public class MultiReactorBootstrap {
      */
     private ReactorGroup subReactorGroup;
 
-    private final ServerSocketChannel serverSocket;
+    /**
+     * 监听的 ServerSocketChannel。开启 SO_REUSEPORT 时每个 Main Reactor 一个，否则只有一个
+     */
+    private final List<ServerSocketChannel> serverSockets = new ArrayList<>();
+
+    private final HandlerFactory handlerFactory;
+
+    /**
+     * 是否为每个 Main Reactor 打开一个设置了 SO_REUSEPORT 的 ServerSocketChannel，由内核在它们之间负载均衡新连接
+     */
+    private boolean reusePort;
+
+    /**
+     * 是否由接收连接的 Main Reactor 直接处理该连接的 IO，不再交给 Sub Reactor，省去跨线程传递
+     */
+    private boolean acceptorHandlesIo;
+
+    /**
+     * 监听队列长度，即内核中已完成握手、等待 accept 的连接数上限
+     */
+    private int backlog = 1024;
 
-    private final Class<?> handlerClass;
+    /**
+     * Acceptor 每次被唤醒时最多接收的连接数
+     */
+    private int maxAcceptsPerWakeup = Reactor.MAX_ACCEPTS_PER_WAKEUP;
+
+    /**
+     * 所有连接数之和的上限，超过后新连接直接关闭
+     */
+    private int maxConnections = Integer.MAX_VALUE;
+
+    /**
+     * 所有连接数之和。开启 SO_REUSEPORT 时多个 Acceptor 并发接收连接，先加一占位再检查上限，不会超过 maxConnections。
+     * 连接关闭时由 Handler 通过 {@link Reactor#bootstrapConnections} 减一
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * 每个处理 IO 的 Reactor 上的连接数上限，超过后新连接直接关闭
+     */
+    private int maxConnectionsPerReactor = Integer.MAX_VALUE;
 
+    /**
+     * 创建并立即绑定端口，使用单个 ServerSocketChannel
+     */
     public MultiReactorBootstrap(int port, ReactorGroup mainReactorGroup, ReactorGroup subReactorGroup,
-        Class<?> handlerClass) throws IOException {
+        HandlerFactory handlerFactory) throws IOException {
+        this(new InetSocketAddress(port), mainReactorGroup, subReactorGroup, handlerFactory);
+    }
+
+    /**
+     * 创建并立即绑定地址，可以是 TCP 地址或者 Unix 域套接字地址（{@link java.net.UnixDomainSocketAddress}）
+     */
+    public MultiReactorBootstrap(SocketAddress address, ReactorGroup mainReactorGroup, ReactorGroup subReactorGroup,
+        HandlerFactory handlerFactory) throws IOException {
+        this(mainReactorGroup, subReactorGroup, handlerFactory);
+        bind(address);
+    }
+
+    /**
+     * 只创建，设置好选项后调用 {@link #bind(int)} 绑定端口
+     */
+    public MultiReactorBootstrap(ReactorGroup mainReactorGroup, ReactorGroup subReactorGroup,
+        HandlerFactory handlerFactory) {
+        if (!handlerFactory.supportsJournal() && (mainReactorGroup.hasJournal() || subReactorGroup.hasJournal())) {
+            // 同 Reactor#journal：不能记录请求日志的 Handler 直接拒绝，不静默跳过
+            throw new IllegalStateException("handlers of this bootstrap do not support journal");
+        }
         this.mainReactorGroup = mainReactorGroup;
         this.subReactorGroup = subReactorGroup;
-        this.handlerClass = handlerClass;
+        this.handlerFactory = handlerFactory;
+    }
 
-        // 将服务端 ServerSocketChannel 绑定到端口上
-        serverSocket = ServerSocketChannel.open();
-        serverSocket.socket().bind(new InetSocketAddress(port));
+    public MultiReactorBootstrap reusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    public MultiReactorBootstrap acceptorHandlesIo(boolean acceptorHandlesIo) {
+        this.acceptorHandlesIo = acceptorHandlesIo;
+        return this;
+    }
+
+    public MultiReactorBootstrap backlog(int backlog) {
+        this.backlog = backlog;
+        return this;
+    }
+
+    public MultiReactorBootstrap maxAcceptsPerWakeup(int maxAcceptsPerWakeup) {
+        this.maxAcceptsPerWakeup = maxAcceptsPerWakeup;
+        return this;
+    }
+
+    public MultiReactorBootstrap maxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public MultiReactorBootstrap maxConnectionsPerReactor(int maxConnectionsPerReactor) {
+        this.maxConnectionsPerReactor = maxConnectionsPerReactor;
+        return this;
+    }
+
+    /**
+     * 所有处理 IO 的 Reactor 上的活跃连接数
+     */
+    public int activeConnections() {
+        return connections.get();
+    }
+
+    /**
+     * 绑定端口，让 Main Reactor 开始接收连接
+     */
+    public MultiReactorBootstrap bind(int port) throws IOException {
+        return bind(new InetSocketAddress(port));
+    }
+
+    /**
+     * 绑定 TCP 地址或者 Unix 域套接字地址，让 Main Reactor 开始接收连接。Unix 域套接字不支持 SO_REUSEPORT
+     */
+    public MultiReactorBootstrap bind(SocketAddress address) throws IOException {
+        // 连接关闭时 Handler 只知道所在的 Reactor，因此处理 IO 的 Reactor 只能属于一个 MultiReactorBootstrap
+        for (Reactor ioReactor : (acceptorHandlesIo ? mainReactorGroup : subReactorGroup).children) {
+            if (ioReactor.bootstrapConnections != null && ioReactor.bootstrapConnections != connections) {
+                throw new IllegalStateException(ioReactor.name() + " already serves another bootstrap");
+            }
+            ioReactor.bootstrapConnections = connections;
+        }
+        if (reusePort) {
+            // 每个 Main Reactor 绑定一个自己的 ServerSocketChannel，连接由内核分配，不存在单个 accept 线程的瓶颈
+            for (Reactor mainReactor : mainReactorGroup.children) {
+                bind(address, mainReactor);
+            }
+        } else {
+            bind(address, mainReactorGroup.next());
+        }
+        return this;
+    }
+
+    private void bind(SocketAddress address, Reactor mainReactor) throws IOException {
+        // 将服务端 ServerSocketChannel 绑定到地址上
+        final ServerSocketChannel serverSocket = ServerChannels.open(address);
+        if (reusePort) {
+            if (!serverSocket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                serverSocket.close();
+                throw new UnsupportedOperationException("SO_REUSEPORT is not supported for " + address);
+            }
+            serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        ServerChannels.bind(serverSocket, address, backlog);
         serverSocket.configureBlocking(false);
+        serverSockets.add(serverSocket);
         // 让 Main Reactor 监听 ServerSocketChannel 上的 ACCEPT 事件
-        SelectionKey selectionKey = this.mainReactorGroup.register(serverSocket);
-        selectionKey.interestOps(SelectionKey.OP_ACCEPT);
-        selectionKey.attach(new Acceptor());
+        mainReactor.register(serverSocket, SelectionKey.OP_ACCEPT, new Acceptor(serverSocket, mainReactor));
     }
 
-    private class Acceptor implements Runnable {
+    private class Acceptor implements SelectionHandler {
+
+        private final ServerSocketChannel serverSocket;
+
+        /**
+         * 监听该 ServerSocketChannel 的 Main Reactor
+         */
+        private final Reactor mainReactor;
+
+        private final ErrorLog acceptErrorLog = new ErrorLog();
+
+        Acceptor(ServerSocketChannel serverSocket, Reactor mainReactor) {
+            this.serverSocket = serverSocket;
+            this.mainReactor = mainReactor;
+        }
 
         @Override
-        public synchronized void run() {
-            try {
-                SocketChannel socket = serverSocket.accept();
-                if (socket != null) {
-                    socket.write(ByteBuffer.wrap("reactor> ".getBytes()));
-                    // 从 Sub Reactor 组中轮询选择一个 Reactor，用于处理新的客户端连接
-                    final Reactor subReactor = subReactorGroup.next();
-
-                    // 实例化 Handler
-                    final Constructor<?> constructor = handlerClass.getConstructor(Selector.class, SocketChannel.class);
-                    // 将客户端 SocketChannel 注册到 Sub Reactor 的 Selector 上
-                    constructor.newInstance(subReactor.selector, socket);
-                    // 启动 Sub Reactor 线程，开始监听客户端 SocketChannel 上的 IO 事件
-                    subReactor.startThread();
+        public void handle(SelectionKey key) {
+            // 一次唤醒最多接收 maxAcceptsPerWakeup 个连接，避免积压的连接每个都要经过一轮 select
+            for (int i = 0; i < maxAcceptsPerWakeup; i++) {
+                final SocketChannel socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    // 例如文件描述符耗尽，本轮不再接收，等下一次 select
+                    mainReactor.metrics.acceptErrors.increment();
+                    acceptErrorLog.log(mainReactor.name() + ": failed to accept connection", e);
+                    return;
+                }
+                if (socket == null) {
+                    return;
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                // 由 Main Reactor 处理 IO 时不经过 Sub Reactor，否则从 Sub Reactor 组中轮询选择一个 Reactor，用于处理新的客户端连接
+                final Reactor ioReactor = acceptorHandlesIo ? mainReactor : subReactorGroup.next();
+                if (!admit(ioReactor)) {
+                    // 超过连接数上限，不创建 Handler，直接关闭
+                    mainReactor.metrics.rejectedConnections.increment();
+                    closeQuietly(socket);
+                    continue;
+                }
+                mainReactor.metrics.acceptedConnections.increment();
+                dispatch(ioReactor, socket);
+            }
+        }
+
+        /**
+         * 检查连接数上限，通过时为 ioReactor 预留一个连接，连接关闭时由 Handler 释放。
+         * 总数和每个 Reactor 的连接数都先加一占位再检查，多个 Acceptor 并发时也不会超过上限
+         */
+        private boolean admit(Reactor ioReactor) {
+            if (connections.incrementAndGet() > maxConnections) {
+                connections.decrementAndGet();
+                return false;
+            }
+            if (ioReactor.metrics.activeConnections.incrementAndGet() > maxConnectionsPerReactor) {
+                release(ioReactor);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * 释放 {@link #admit} 预留的连接，用于没有创建 Handler 的连接
+         */
+        private void release(Reactor ioReactor) {
+            ioReactor.metrics.activeConnections.decrementAndGet();
+            connections.decrementAndGet();
+        }
+
+        private void dispatch(Reactor ioReactor, SocketChannel socket) {
+            try {
+                socket.write(NioHandler.GREETING.duplicate());
+            } catch (IOException e) {
+                // 客户端在握手后立即断开等，只计数不打印
+                release(ioReactor);
+                mainReactor.metrics.acceptErrors.increment();
+                closeQuietly(socket);
+                return;
             }
+            if (ioReactor == mainReactor) {
+                // 当前就在 Main Reactor 线程中，直接创建 Handler 并注册到自己的 Selector 上
+                newHandler(mainReactor, socket);
+            } else {
+                // 将 Handler 的创建（以及客户端 SocketChannel 的注册）提交给 Sub Reactor 线程执行，
+                // 不会因 Sub Reactor 阻塞在 select() 上而阻塞 Main Reactor。首次提交任务时会启动 Sub Reactor 线程
+                ioReactor.execute(() -> newHandler(ioReactor, socket));
+            }
+        }
+
+        private void newHandler(Reactor reactor, SocketChannel socket) {
+            try {
+                handlerFactory.newHandler(reactor, socket);
+            } catch (IOException | IllegalStateException e) {
+                // IllegalStateException：Handler 不支持之后才设置到 Reactor 上的请求日志，见 PipelineNioHandler
+                release(reactor);
+                reactor.metrics.acceptErrors.increment();
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel socket) {
+        try {
+            socket.close();
+        } catch (IOException ignore) {
         }
     }
 }
@@ -1,69 +1,168 @@
 package com.cnscarb.reactor.reactor;
 
-import java.io.EOFException;
+import com.cnscarb.reactor.codec.LineFrameDecoder;
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+
 import java.io.IOException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * 多线程 Handler，IO 的 read 和 write 操作仍由 Reactor 线程处理，业务处理逻辑（decode、process、encode）由该线程池处理
+ * 多线程 Handler，IO 的 read 和 write 操作仍由 Reactor 线程处理，业务处理逻辑（decode、process、encode）由业务线程组处理
+ * <p>
+ * 每个连接固定在 {@link WorkerGroup} 的一条串行通道上，同一时刻最多只有一个处理任务，状态在 Reactor 线程和业务线程之间
+ * 通过任务队列交接（队列保证 happens-before），不需要 synchronized
  */
 public class MultiThreadNioHandler extends NioHandler {
-    static Executor pool = Executors.newFixedThreadPool(4);
 
-    static final int PROCESSING = 3;
+    /**
+     * PROCESSING：业务线程正在处理，或者任务在通道队列中等待；PAUSED：通道队列已满，等待通道恢复后重新提交
+     */
+    static final int PROCESSING = 2, PAUSED = 3;
+
+    /**
+     * 当前连接固定使用的串行通道
+     */
+    private final WorkerGroup.Lane lane;
+
+    /**
+     * 提交给业务线程和 Reactor 线程的任务，每个连接创建一次，之后重复提交，不产生新对象
+     */
+    private final Runnable processTask = this::processAndHandOff;
+    private final Runnable handOffTask = this::handOff;
+    final Runnable resumeTask = this::resume;
 
-    public MultiThreadNioHandler(Selector selector, SocketChannel socket) throws IOException {
-        super(selector, socket);
+    /**
+     * 业务处理是否失败，由业务线程写入，交接给 Reactor 线程后读取
+     */
+    private boolean failed;
+
+    /**
+     * 业务线程处理期间 Reactor 线程要求关闭连接（例如超时），等交接回来后再关闭。
+     * 不放在状态字中，因为处理期间业务线程可能同时修改状态字（CLOSE_AFTER_FLUSH）
+     */
+    private boolean closeRequested;
+
+    /**
+     * 本批请求交给业务线程的时间，交接回来时计算处理延迟（包括在通道队列中等待的时间），只在 Reactor 线程中访问
+     */
+    private long processStartNanos;
+
+    public MultiThreadNioHandler(Reactor reactor, SocketChannel socket) throws IOException {
+        this(reactor, socket, WorkerGroup.defaultGroup());
+    }
+
+    public MultiThreadNioHandler(Reactor reactor, SocketChannel socket, WorkerGroup workerGroup) throws IOException {
+        super(reactor, socket);
+        this.lane = workerGroup.next();
     }
 
     /**
-     * 重写 read 方法，从客户端 socket 读取数据之后交给线程池进行处理，而不是在当前线程直接处理
+     * 使用指定业务线程组的 Handler 工厂
+     */
+    public static HandlerFactory factory(WorkerGroup workerGroup) {
+        return (reactor, socket) -> new MultiThreadNioHandler(reactor, socket, workerGroup);
+    }
+
+    /**
+     * 重写 handleFrames 方法，累积 Buffer 中有完整的帧时交给业务线程进行处理，而不是在当前线程直接处理
      */
     @Override
-    protected synchronized void read() throws IOException {
-        input.clear();
-        int n = socket.read(input);
-        // 判断是否读取完毕（客户端是否输入换行符）
-        if (inputIsComplete(n)) {
-            // 切换成处理中状态，多线程进行处理
-            state = PROCESSING;
-            pool.execute(new Processor());
+    protected void handleFrames() throws IOException {
+        if (!LineFrameDecoder.containsDelimiter(input, 0, input.position())) {
+            // 没有完整的帧，继续读取
+            afterProcess();
+            return;
         }
+        // 分配器只能在 Reactor 线程中使用，先借好足够容纳这一批响应的 Buffer，业务线程只写入不借出。
+        // 每个帧至少包含 1 个字节和 1 个换行符，因此帧数不超过累积字节数的一半
+        final int bytes = input.position();
+        outbound.tail(bytes * UpperCaseCodec.MAX_EXPANSION + (bytes / 2 + 1) * PROMPT.capacity());
+        // 处理期间不关注任何 IO 事件，避免 Reactor 重复分发可读事件，也避免 Reactor 线程发送业务线程正在写入的 Buffer
+        selectionKey.interestOps(0);
+        processStartNanos = System.nanoTime();
+        submit();
     }
 
     /**
-     * 业务处理逻辑，处理完后切换成发送状态
+     * 提交给串行通道。队列已满时保持暂停读取，登记到通道上等待恢复；业务线程组已停止时关闭连接
      */
-    synchronized void processAndHandOff() {
+    private void submit() {
+        state(PROCESSING);
+        final boolean offered;
         try {
-            // 进行业务处理
-            process();
-        } catch (EOFException e) {
-            // 直接关闭连接
-            try {
-                selectionKey.channel().close();
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
+            offered = lane.offer(processTask);
+        } catch (RejectedExecutionException e) {
+            state(READING);
+            close();
             return;
         }
-        // 业务处理完成，切换成发送状态。发送仍交给 Reactor 线程处理。
-        state = SENDING;
-        selectionKey.interestOps(SelectionKey.OP_WRITE);
+        if (!offered) {
+            state(PAUSED);
+            lane.park(this);
+        }
+    }
 
-        // 立即唤醒 selector，以便新注册的 OP_WRITE 事件能立即被响应。
-        // 此时 Reactor 会收到并分发 OP_WRITE 事件，又会走到 Handler 的 run 方法，由 Reactor 线程继续执行 send()
-        selectionKey.selector().wakeup();
+    /**
+     * 通道腾出空间后在 Reactor 线程中调用，重新提交
+     */
+    private void resume() {
+        if (state() == PAUSED) {
+            submit();
+        }
+    }
+
+    /**
+     * 业务处理逻辑，在业务线程中执行，处理完后交回 Reactor 线程发送
+     */
+    void processAndHandOff() {
+        try {
+            // 解码并处理所有完整的帧
+            decodeFrames();
+        } catch (IOException e) {
+            // 关闭连接需要归还 Buffer，交给 Reactor 线程执行
+            failed = true;
+        }
+        // 业务处理完成，交回 Reactor 线程。同一轮事件循环中多个连接的交接只会唤醒 Selector 一次，
+        // 随后由 Reactor 线程继续执行 send()
+        reactor.execute(handOffTask);
+    }
+
+    /**
+     * 在 Reactor 线程中接手业务线程的处理结果
+     */
+    private void handOff() {
+        reactor.metrics.recordProcess(System.nanoTime() - processStartNanos);
+        state(READING);
+        if (failed || closeRequested) {
+            close();
+            return;
+        }
+        try {
+            afterProcess();
+            releaseInputIfEmpty();
+        } catch (IOException e) {
+            close();
+        }
     }
 
-    class Processor implements Runnable {
-        @Override
-        public void run() {
-            processAndHandOff();
+    /**
+     * 帧在业务线程中处理，而响应缓存属于 Reactor、只能在 Reactor 线程中访问，因此不使用缓存
+     */
+    @Override
+    protected ResponseCache responseCache() {
+        return null;
+    }
+
+    /**
+     * 业务线程处理期间推迟关闭，避免业务线程使用已归还的 Buffer
+     */
+    @Override
+    protected void close() {
+        if (state() == PROCESSING) {
+            closeRequested = true;
+            return;
         }
+        super.close();
     }
 }
@@ -1,185 +1,605 @@
 package com.cnscarb.reactor.reactor;
 
+import com.cnscarb.reactor.buffer.OutboundBuffer;
+import com.cnscarb.reactor.buffer.WriteBufferWaterMark;
+import com.cnscarb.reactor.codec.LineFrameDecoder;
+import com.cnscarb.reactor.codec.TooLongFrameException;
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+import com.cnscarb.reactor.journal.Journal;
+
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 单线程非阻塞处理器
  */
-public class NioHandler implements Runnable {
+public class NioHandler implements SelectionHandler {
 
-    private static final int MAX_INPUT_BUFFER_SIZE = 1024;
+    static final int MAX_INPUT_BUFFER_SIZE = 1024;
 
     private static final int MAX_OUTPUT_BUFFER_SIZE = 1024;
 
-    final SocketChannel socket;
+    /**
+     * 处理当前连接 IO 事件的 Reactor
+     */
+    final Reactor reactor;
+
+    /**
+     * Handler 被回收复用时会被替换
+     */
+    SocketChannel socket;
+
+    /**
+     * Reactor 重建 Selector 时会被替换，只在 Reactor 线程中访问
+     */
+    SelectionKey selectionKey;
+
+    /**
+     * 输入 Buffer 从 Reactor 的池化分配器中借出的直接内存。读取时才借出，处理完没有剩余的半个帧就立即归还，
+     * 空闲连接不占用输入 Buffer
+     */
+    ByteBuffer input;
+
+    /**
+     * 待发送的响应队列，其中的 Buffer 同样从池化分配器中借出
+     */
+    final OutboundBuffer outbound;
+
+    /**
+     * 状态字的低 2 位是处理状态
+     */
+    static final int STATE_MASK = 0b11;
+
+    static final int READING = 0, CLOSED = 1;
+
+    /**
+     * 收到空行或 ctrl+c，发送完已有响应后关闭连接
+     */
+    static final int CLOSE_AFTER_FLUSH = 1 << 2;
+
+    /**
+     * {@link StreamingNioHandler}：当前行是否已经发送过内容，用于区分空行
+     */
+    static final int LINE_STARTED = 1 << 3;
+
+    /**
+     * 关闭后回收到 Reactor 的对象池，见 {@link #RECYCLING}。创建时确定，{@link #init} 时保留
+     */
+    static final int RECYCLABLE = 1 << 4;
+
+    /**
+     * 连接状态字，低 2 位是处理状态，其余位是标志位。所有状态放在一个 int 中，减少每个连接占用的内存。只在 Reactor 线程中访问
+     */
+    int flags = READING;
+
+    /**
+     * 连接建立时发送的提示符，所有连接共享的只读直接内存 Buffer，使用时 duplicate
+     */
+    public static final ByteBuffer GREETING = readOnlyDirect("reactor> ");
+
+    /**
+     * 提示符，跟在每个响应后面，所有连接共享
+     */
+    static final ByteBuffer PROMPT = readOnlyDirect("\r\nreactor> ");
+
+    /**
+     * 行分隔帧解码器，input buffer 作为累积 Buffer。重写了 {@link #decodeFrames()}、自行分帧的子类没有
+     */
+    final LineFrameDecoder frameDecoder;
+
+    /**
+     * 关闭后回收到 Reactor 的对象池，创建时优先从对象池中取出复用，避免大量短连接反复创建 Handler 和发送队列。
+     * 只回收 NioHandler 本身，子类可能有额外的状态，不回收
+     */
+    public static final HandlerFactory RECYCLING = (reactor, socket) -> {
+        NioHandler handler = reactor.recycledHandlers.poll();
+        if (handler == null) {
+            handler = new NioHandler(reactor, true, true);
+        }
+        handler.init(socket);
+        return handler;
+    };
+
+    /**
+     * 类是否沿用了 NioHandler 的 {@link #process}。响应缓存以请求字节为键，不区分处理逻辑，
+     * 同一个 Reactor 上可能同时有不同的 Handler，覆盖了 process 的 Handler 不能使用缓存，否则会读到其他处理逻辑的响应
+     */
+    private static final ClassValue<Boolean> DEFAULT_PROCESS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != NioHandler.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("process", ByteBuffer.class, ByteBuffer.class);
+                    return false;
+                } catch (NoSuchMethodException e) {
+                    // 继续检查父类
+                }
+            }
+            return true;
+        }
+    };
+
+    /**
+     * 超时类型
+     */
+    public enum TimeoutType {
+        /**
+         * 超过指定时间没有读到数据
+         */
+        READ,
+        /**
+         * 有待发送的数据，但超过指定时间没有写出任何字节，例如客户端不再读取
+         */
+        WRITE,
+        /**
+         * 超过指定时间既没有读到也没有写出数据
+         */
+        IDLE
+    }
 
-    final SelectionKey selectionKey;
+    /**
+     * 超时配置，默认是 Reactor 上所有连接共享的实例，见 {@link Reactor#timeouts(TimeoutConfig)}
+     */
+    private TimeoutConfig timeouts;
 
-    ByteBuffer input = ByteBuffer.allocate(MAX_INPUT_BUFFER_SIZE);
+    /**
+     * 最近一次读到数据、写出数据的时间，取自 {@link Reactor#nanoTime()}
+     */
+    private long lastReadNanos, lastWriteNanos;
 
-    ByteBuffer output = ByteBuffer.allocate(MAX_OUTPUT_BUFFER_SIZE);
+    /**
+     * 连接编号，见 {@link Reactor#newConnectionId()}，用于在请求日志中区分连接
+     */
+    private long connectionId;
 
-    static final int READING = 0, SENDING = 1, CLOSED = 2;
+    /**
+     * 检查超时的定时任务，每个连接只有一个，按最近的超时时间调度。启用任一超时后才创建
+     */
+    private HashedWheelTimer.Timeout timeoutCheck;
 
     /**
-     * Handler 当前处理状态
+     * Handler 在 Reactor 线程中创建，因此注册操作不会与阻塞中的 select() 竞争
      */
-    int state = READING;
+    public NioHandler(Reactor reactor, SocketChannel socket) throws IOException {
+        this(reactor, socket, true);
+    }
 
     /**
-     * 缓存每次读取的内容
+     * @param frameDecoder 是否使用默认的行分隔帧解码器。重写了 {@link #decodeFrames()}、自行分帧的子类传入 false，不创建解码器
      */
-    StringBuilder inputStringBuilder = new StringBuilder();
+    protected NioHandler(Reactor reactor, SocketChannel socket, boolean frameDecoder) throws IOException {
+        this(reactor, false, frameDecoder);
+        init(socket);
+    }
+
+    private NioHandler(Reactor reactor, boolean recyclable, boolean frameDecoder) {
+        this.reactor = reactor;
+        this.flags = recyclable ? RECYCLABLE : 0;
+        this.frameDecoder = frameDecoder ? new LineFrameDecoder(MAX_INPUT_BUFFER_SIZE - 1) : null;
+        this.outbound = new OutboundBuffer(reactor.allocator, MAX_OUTPUT_BUFFER_SIZE, WriteBufferWaterMark.DEFAULT);
+    }
 
-    public NioHandler(Selector selector, SocketChannel socket) throws IOException {
+    /**
+     * 绑定客户端连接，新创建和从对象池中复用的 Handler 都从这里开始
+     */
+    private void init(SocketChannel socket) throws IOException {
         this.socket = socket;
+        this.flags = READING | (flags & RECYCLABLE);
+        this.connectionId = reactor.newConnectionId();
         // 设置非阻塞（NIO）。这样，socket 上的操作如果无法立即完成，不会阻塞，而是会立即返回。
         socket.configureBlocking(false);
         // Optionally try first read now
         // 注册客户端 socket 到 Selector。
-        // 这里先不设置感兴趣的事件，分离 register 和 interestOps 这两个操作，避免多线程下的竞争条件和同步问题。
-        this.selectionKey = socket.register(selector, 0);
+        this.selectionKey = socket.register(reactor.selector, 0);
         // 把 Handler 自身放到 selectionKey 的附加属性中，用于在 IO 事件就绪时从 selectedKey 中获取 Handler，然后处理 IO 事件。
         this.selectionKey.attach(this);
-        // 监听客户端连接上的 IO READ 事件
+        // 监听客户端连接上的 IO READ 事件。当前就在 Reactor 线程中，下一次 select() 就会生效，无需唤醒 Selector
         this.selectionKey.interestOps(SelectionKey.OP_READ);
+        this.lastReadNanos = this.lastWriteNanos = reactor.nanoTime();
+        this.timeouts = reactor.timeouts();
+        checkTimeouts();
+    }
+
+    final int state() {
+        return flags & STATE_MASK;
+    }
 
-        // 由于 Selector 的注册信息发生变化，立即唤醒 Selector，让它能够处理最新订阅的 IO 事件
-        selector.wakeup();
+    final void state(int state) {
+        flags = (flags & ~STATE_MASK) | state;
+    }
+
+    final boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    final void setFlag(int flag) {
+        flags |= flag;
+    }
+
+    final void clearFlag(int flag) {
+        flags &= ~flag;
+    }
+
+    /**
+     * 为当前连接单独设置超时配置。必须在 Reactor 线程中调用，例如在 {@link HandlerFactory} 中创建 Handler 之后。
+     * 同一种连接应当共享同一个实例，所有连接使用相同的配置时设置 {@link Reactor#timeouts(TimeoutConfig)} 即可
+     */
+    public NioHandler timeouts(TimeoutConfig timeouts) {
+        this.timeouts = timeouts;
+        checkTimeouts();
+        return this;
+    }
+
+    /**
+     * 设置读超时，0 表示不启用。必须在 Reactor 线程中调用。
+     * 会为当前连接创建一份单独的配置，大量连接使用相同配置时用 {@link #timeouts(TimeoutConfig)} 共享
+     */
+    public NioHandler readTimeout(long timeout, TimeUnit unit) {
+        return timeouts(timeouts.readTimeout(timeout, unit));
+    }
+
+    /**
+     * 设置写超时，0 表示不启用。必须在 Reactor 线程中调用
+     */
+    public NioHandler writeTimeout(long timeout, TimeUnit unit) {
+        return timeouts(timeouts.writeTimeout(timeout, unit));
+    }
+
+    /**
+     * 设置空闲超时，0 表示不启用。必须在 Reactor 线程中调用
+     */
+    public NioHandler idleTimeout(long timeout, TimeUnit unit) {
+        return timeouts(timeouts.idleTimeout(timeout, unit));
+    }
+
+    /**
+     * 检查是否有超时发生，没有则按最近的超时时间重新调度。
+     * <p>
+     * 读写时只记录时间，不重新调度定时任务，活跃的连接每个超时周期只需要检查一次
+     */
+    private void checkTimeouts() {
+        if (state() == CLOSED) {
+            return;
+        }
+        final long now = reactor.nanoTime();
+        final long readTimeoutNanos = timeouts.readTimeoutNanos;
+        final long writeTimeoutNanos = timeouts.writeTimeoutNanos;
+        final long idleTimeoutNanos = timeouts.idleTimeoutNanos;
+        long delay = Long.MAX_VALUE;
+        if (readTimeoutNanos > 0) {
+            final long remaining = lastReadNanos + readTimeoutNanos - now;
+            if (remaining <= 0) {
+                onTimeout(TimeoutType.READ);
+                return;
+            }
+            delay = Math.min(delay, remaining);
+        }
+        if (writeTimeoutNanos > 0) {
+            if (state() == MultiThreadNioHandler.PROCESSING || outbound.isEmpty()) {
+                // 业务线程正在写入发送队列，Reactor 线程不能读取它的状态，此时也不会发送；或者没有待发送的数据。
+                // 都不会发生写超时，一个写超时周期后再检查
+                delay = Math.min(delay, writeTimeoutNanos);
+            } else {
+                final long remaining = lastWriteNanos + writeTimeoutNanos - now;
+                if (remaining <= 0) {
+                    onTimeout(TimeoutType.WRITE);
+                    return;
+                }
+                delay = Math.min(delay, remaining);
+            }
+        }
+        if (idleTimeoutNanos > 0) {
+            final long remaining = Math.max(lastReadNanos, lastWriteNanos) + idleTimeoutNanos - now;
+            if (remaining <= 0) {
+                onTimeout(TimeoutType.IDLE);
+                return;
+            }
+            delay = Math.min(delay, remaining);
+        }
+        if (delay == Long.MAX_VALUE) {
+            // 没有启用任何超时
+            if (timeoutCheck != null) {
+                reactor.timer.cancel(timeoutCheck);
+            }
+            return;
+        }
+        if (timeoutCheck == null) {
+            timeoutCheck = reactor.timer.newTimeout(this::checkTimeouts);
+        }
+        reactor.timer.schedule(timeoutCheck, delay, now);
+    }
+
+    /**
+     * 发生超时时调用，默认关闭连接。子类可以重写，例如发送提示后再关闭
+     */
+    protected void onTimeout(TimeoutType type) {
+        reactor.metrics.timedOutConnections.increment();
+        close();
     }
 
     @Override
-    public void run() {
+    public void handle(SelectionKey key) {
         try {
-            if (state == READING) {
+            final int readyOps = key.readyOps();
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                // 此时通道已经准备好写入数据。先发送，可能让连接恢复可写
+                send();
+            }
+            if ((readyOps & SelectionKey.OP_READ) != 0 && state() == READING) {
                 // 此时通道已经准备好读取数据
                 read();
-            } else if (state == SENDING) {
-                // 此时通道已经准备好写入数据
-                send();
             }
         } catch (IOException ex) {
             // 关闭连接
-            try {
-                selectionKey.channel().close();
-            } catch (IOException ignore) {
-            }
+            close();
+        }
+    }
+
+    @Override
+    public void selectionKeyChanged(SelectionKey newKey) {
+        this.selectionKey = newKey;
+    }
+
+    /**
+     * 关闭连接并归还 Buffer，必须在 Reactor 线程中调用
+     */
+    protected void close() {
+        if (state() == CLOSED) {
+            return;
+        }
+        state(CLOSED);
+        if (timeoutCheck != null) {
+            reactor.timer.cancel(timeoutCheck);
         }
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+        if (input != null) {
+            reactor.allocator.release(input);
+            input = null;
+        }
+        outbound.releaseAll();
+        // 连接数在 Acceptor 接收连接时增加
+        reactor.metrics.activeConnections.decrementAndGet();
+        final AtomicInteger bootstrapConnections = reactor.bootstrapConnections;
+        if (bootstrapConnections != null) {
+            bootstrapConnections.decrementAndGet();
+        }
+        if (hasFlag(RECYCLABLE) && reactor.recycledHandlers.size() < Reactor.MAX_RECYCLED_HANDLERS) {
+            // 已取消的 SelectionKey 即使还在本轮的就绪集合中也不会再被分发，可以立即回收
+            socket = null;
+            selectionKey = null;
+            frameDecoder.reset();
+            reactor.recycledHandlers.push(this);
+        }
+    }
+
+    private static ByteBuffer readOnlyDirect(String content) {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
     }
 
     /**
-     * 从通道读取字节
+     * 从通道读取字节，追加到累积 Buffer 中，然后处理其中所有完整的帧
      */
     protected void read() throws IOException {
-        // 清空 input buffer
-        input.clear();
-        // 读取内容到接收 input buffer
+        if (input == null) {
+            input = reactor.allocator.allocate(MAX_INPUT_BUFFER_SIZE);
+        }
+        // 不清空 input buffer，上次读取剩下的半个帧仍保留在其中
         int n = socket.read(input);
-        // 判断用户是否输入完成
-        if (inputIsComplete(n)) {
-            // 用户输入完成，进行处理，将用户输入放入 output buffer
-            process();
-            // 修改 Handler 状态为响应
-            state = SENDING;
-            // 修改 channel select 的事件类型
-            // Normally also do first write now
-            selectionKey.interestOps(SelectionKey.OP_WRITE);
+        if (n == -1) {
+            // -1 客户端关闭了连接
+            throw new EOFException();
+        }
+        if (n > 0) {
+            lastReadNanos = reactor.nanoTime();
+            reactor.metrics.recordRead(n);
+            handleFrames();
         }
+        releaseInputIfEmpty();
     }
 
     /**
-     * 当读取到 \r\n 时表示结束，切换到响应状态
-     *
-     * @param bytes 读取的字节数
-     *              -1：到达了流的末尾，连接已经关闭
-     *              0：当前没有可用数据，连接仍打开，通常在非阻塞模式下返回
-     *              > 0：读取的字节数
-     * @throws IOException
-     */
-    protected boolean inputIsComplete(int bytes) throws IOException {
-        if (bytes > 0) {
-            // 将 ByteBuffer 切换成读取模式
-            input.flip();
-            // 每次读取一个字符，添加到 inputStringBuilder，如果读到换行符则结束读取
-            while (input.hasRemaining()) {
-                byte ch = input.get();
-
-                if (ch == 3) { // ctrl+c 关闭连接
-                    state = CLOSED;
-                    return true;
-                } else if (ch == '\r') { // continue
-                } else if (ch == '\n') {
-                    // 读取到了 \r\n，读取结束
-                    return true;
+     * 累积 Buffer 中没有剩余的半个帧时归还给分配器，下次读取时再借
+     */
+    void releaseInputIfEmpty() {
+        if (input != null && input.position() == 0 && state() == READING) {
+            reactor.allocator.release(input);
+            input = null;
+        }
+    }
+
+    /**
+     * 处理累积 Buffer 中所有完整的帧，然后根据处理结果切换状态
+     */
+    protected void handleFrames() throws IOException {
+        final long start = System.nanoTime();
+        decodeFrames();
+        reactor.metrics.recordProcess(System.nanoTime() - start);
+        afterProcess();
+    }
+
+    /**
+     * 从累积 Buffer 中循环取出完整的帧进行处理，所有响应都写入发送队列，之后一次性发送。
+     * 剩余的半个帧留在累积 Buffer 中。Reactor 设置了请求日志时，每个帧和它的响应追加一条记录；
+     * 启用了响应缓存时，先按帧的原始字节查找缓存，命中则不调用 {@link #process}
+     */
+    protected void decodeFrames() throws IOException {
+        final Journal journal = reactor.journal();
+        final ResponseCache cache = responseCache();
+        // 将 ByteBuffer 切换成读取模式
+        input.flip();
+        try {
+            int delimiter;
+            while (!hasFlag(CLOSE_AFTER_FLUSH) && (delimiter = frameDecoder.findDelimiter(input)) >= 0) {
+                final int start = input.position();
+                final int end = LineFrameDecoder.frameEnd(input, delimiter);
+                if (end == start || input.get(delimiter) == LineFrameDecoder.ETX) {
+                    // 用户只敲了个回车，或者输入了 ctrl+c，发送完已有的响应后断开连接
+                    setFlag(CLOSE_AFTER_FLUSH);
+                    input.position(input.limit());
+                    break;
+                }
+                // 只把当前帧暴露给 process
+                final int limit = input.limit();
+                input.limit(end);
+                final long hash = cache != null ? ResponseCache.hash(input, start, end - start) : 0;
+                final int slot = cache != null ? cache.get(hash, input) : -1;
+                ByteBuffer out;
+                int responseStart;
+                if (slot >= 0) {
+                    // 命中缓存，跳过处理，直接复制编码好的响应
+                    out = outbound.tail(cache.responseLength(slot));
+                    responseStart = out.position();
+                    cache.copyResponse(slot, out);
                 } else {
-                    inputStringBuilder.append((char) ch);
+                    out = outbound.tail(PROMPT.capacity());
+                    responseStart = out.position();
+                    if (!process(input, out)) {
+                        out = outbound.tail(maxResponseLength(end - start));
+                        responseStart = out.position();
+                        if (!process(input, out)) {
+                            throw new TooLongFrameException("response exceeds " + maxResponseLength(end - start));
+                        }
+                    }
+                    if (cache != null) {
+                        cache.put(hash, input, start, end - start, out, responseStart, out.position() - responseStart);
+                    }
+                }
+                if (journal != null) {
+                    appendJournal(journal, start, end, out, responseStart);
                 }
+                input.limit(limit);
+                input.position(delimiter + 1);
             }
-        } else if (bytes == -1) {
-            // -1 客户端关闭了连接
-            throw new EOFException();
-        } else {
-            // bytes == 0 继续读取
+        } finally {
+            // 切换回写入模式，剩余的半个帧移动到 Buffer 开头
+            input.compact();
         }
-        return false;
     }
 
     /**
-     * 进行业务处理，将用户输入转换成大写
-     *
-     * @throws EOFException 用户输入 ctrl+c 主动关闭
+     * 把累积 Buffer 中 [start, end) 的请求和发送队列中从 responseStart 到 position 的响应追加到请求日志，
+     * 耗时从最近一次读到数据算起。请求和响应都还在 Buffer 中，按位置复制，不额外分配
      */
-    protected void process() throws EOFException {
-        // 构造用户输入内容字符串
-        String requestContent = inputStringBuilder.toString();
-        // 构造响应
-        byte[] response = requestContent.toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
-        output.put(response);
+    final void appendJournal(Journal journal, int start, int end, ByteBuffer out, int responseStart) {
+        journal.append(connectionId, System.nanoTime() - lastReadNanos,
+            input, start, end - start, out, responseStart, out.position() - responseStart);
     }
 
     /**
-     * 发送响应
+     * 当前连接使用的响应缓存，null 表示不缓存。缓存只能在 Reactor 线程中使用。
+     * 缓存中只有默认处理逻辑的响应，覆盖了 {@link #process} 的子类不使用缓存
      */
-    protected void send() throws IOException {
-        int written = -1;
-        // 切换到读取模式，读取 output buffer，判断是否有数据要发送
-        output.flip();
-        // 如果有数据需要发送，则调用 socket.write 方法发送响应
-        if (output.hasRemaining()) {
-            written = socket.write(output);
+    protected ResponseCache responseCache() {
+        return DEFAULT_PROCESS.get(getClass()) ? reactor.responseCache() : null;
+    }
+
+    /**
+     * 一个帧的响应最大长度：UTF-8 大写转换后长度最多变为 3 倍，再加上提示符
+     */
+    static int maxResponseLength(int frameLength) {
+        return frameLength * UpperCaseCodec.MAX_EXPANSION + PROMPT.capacity();
+    }
+
+    /**
+     * 处理完一批帧之后：有响应则立即尝试发送，否则继续读取
+     */
+    void afterProcess() throws IOException {
+        if (!outbound.isEmpty()) {
+            // Normally also do first write now
+            send();
+        } else if (hasFlag(CLOSE_AFTER_FLUSH)) {
+            close();
+        } else {
+            updateInterestOps();
         }
+    }
 
-        // 检查连接是否处理完毕，是否断开连接
-        if (outputIsComplete(written)) {
-            selectionKey.channel().close();
+    /**
+     * 根据当前状态设置关注的事件：
+     * 连接可写（待发送数据低于高水位线）时关注 OP_READ，否则暂停读取，让 TCP 流量控制把压力传回客户端；
+     * 有没发完的数据时关注 OP_WRITE
+     */
+    void updateInterestOps() {
+        int ops = 0;
+        if (state() == READING && !hasFlag(CLOSE_AFTER_FLUSH) && outbound.isWritable()) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!outbound.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        selectionKey.interestOps(ops);
+    }
+
+    /**
+     * 连接可写状态发生变化时调用，子类可以重写以暂停或恢复产生响应
+     *
+     * @param writable 待发送数据超过高水位线时为 false，降到低水位线以下时为 true
+     */
+    protected void onWritabilityChanged(boolean writable) {
+        if (writable) {
+            reactor.metrics.writableEvents.increment();
         } else {
-            // 否则继续读取
-            state = READING;
-            // 把提示发到界面
-            socket.write(ByteBuffer.wrap("\r\nreactor> ".getBytes()));
-            selectionKey.interestOps(SelectionKey.OP_READ);
+            reactor.metrics.unwritableEvents.increment();
         }
     }
 
     /**
-     * 当用户输入了一个空行，表示连接可以关闭了
+     * 进行业务处理，将用户输入转换成大写，后面跟上提示符，写入 out
+     *
+     * @param frame 一个完整帧的内容（不含换行符），位于 [position, limit)
+     * @return out 剩余空间放不下响应时返回 false，此时不写入任何内容
      */
-    protected boolean outputIsComplete(int written) {
-        if (written <= 0) {
-            // 用户只敲了个回车， 断开连接
-            return true;
+    protected boolean process(ByteBuffer frame, ByteBuffer out) {
+        final int frameMark = frame.position();
+        final int mark = out.position();
+        // 直接在 ByteBuffer 之间进行大写转换，不构造 String
+        if (!UpperCaseCodec.encode(frame, out) || out.remaining() < PROMPT.capacity()) {
+            frame.position(frameMark);
+            out.position(mark);
+            return false;
         }
+        putPrompt(out);
+        return true;
+    }
 
-        // 清空旧数据，接着处理后续的请求
-        output.clear();
-        inputStringBuilder.delete(0, inputStringBuilder.length());
-        return false;
+    /**
+     * 将提示符写入 out，调用方需保证剩余空间足够
+     */
+    static void putPrompt(ByteBuffer out) {
+        // 从共享的提示符 Buffer 中按绝对位置拷贝，不改变其状态，也不创建新对象
+        out.put(out.position(), PROMPT, 0, PROMPT.capacity());
+        out.position(out.position() + PROMPT.capacity());
+    }
+
+    /**
+     * 发送响应。通过 gathering write 一次写出发送队列中的所有数据；只有 socket 发送缓冲区满了写不完时才关注 OP_WRITE 事件
+     */
+    protected void send() throws IOException {
+        final long pendingBytes = outbound.pendingBytes();
+        final boolean flushed = outbound.flush(socket);
+        reactor.metrics.recordWrite(pendingBytes - outbound.pendingBytes());
+        if (flushed || outbound.pendingBytes() < pendingBytes) {
+            // 有数据写出，用于判断写超时和空闲超时
+            lastWriteNanos = reactor.nanoTime();
+        }
+        if (outbound.updateWritability()) {
+            onWritabilityChanged(outbound.isWritable());
+        }
+        if (flushed && hasFlag(CLOSE_AFTER_FLUSH)) {
+            close();
+        } else {
+            // 没有全部写出时保留剩余数据，等待下一次 OP_WRITE
+            updateInterestOps();
+        }
     }
 }
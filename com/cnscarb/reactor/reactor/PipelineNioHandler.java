@@ -0,0 +1,137 @@
+package com.cnscarb.reactor.reactor;
+
+import com.cnscarb.reactor.buffer.PooledBufferAllocator;
+import com.cnscarb.reactor.pipeline.ChannelInitializer;
+import com.cnscarb.reactor.pipeline.ChannelPipeline;
+import com.cnscarb.reactor.pipeline.ChannelSink;
+import com.cnscarb.reactor.pipeline.LineDecoderStage;
+import com.cnscarb.reactor.pipeline.PromptEncoderStage;
+import com.cnscarb.reactor.pipeline.UpperCaseStage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 基于管道的处理器，业务逻辑由 {@link ChannelInitializer} 组装的 {@link ChannelPipeline} 完成，而不是继承 Handler 重写 process
+ * <p>
+ * Handler 只负责 IO：读取到的数据（input 累积 Buffer）交给管道，管道写出的数据拷贝到发送队列
+ */
+public class PipelineNioHandler extends NioHandler implements ChannelSink {
+
+    /**
+     * 默认管道：行解码 -> 大写转换，出站加上提示符，与 {@link NioHandler} 的行为一致
+     */
+    public static final ChannelInitializer UPPER_CASE = pipeline -> pipeline
+        .addLast(new PromptEncoderStage(PROMPT))
+        .addLast(new LineDecoderStage(MAX_INPUT_BUFFER_SIZE - 1))
+        .addLast(new UpperCaseStage());
+
+    final ChannelPipeline pipeline;
+
+    /**
+     * 通过 {@link #reserve(int)} 借给管道阶段直接写入的队尾 Buffer，写回到管道头部之前不能再写入其他数据
+     */
+    private ByteBuffer reserved;
+
+    public PipelineNioHandler(Reactor reactor, SocketChannel socket, ChannelInitializer initializer) throws IOException {
+        // 分帧由管道中的解码阶段完成，不需要默认的帧解码器
+        super(rejectJournal(reactor), socket, false);
+        this.pipeline = new ChannelPipeline(this);
+        initializer.initChannel(pipeline);
+    }
+
+    /**
+     * 使用给定的 initializer 为每个连接组装管道的 {@link HandlerFactory}
+     */
+    public static HandlerFactory factory(ChannelInitializer initializer) {
+        return new HandlerFactory() {
+            @Override
+            public NioHandler newHandler(Reactor reactor, SocketChannel socket) throws IOException {
+                return new PipelineNioHandler(reactor, socket, initializer);
+            }
+
+            @Override
+            public boolean supportsJournal() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 管道中的请求和响应可能被任意拆分、合并，无法逐条记录。请求日志在 Handler 创建之后才设置到 Reactor 上时，
+     * 在这里拒绝连接，而不是静默地不记录
+     */
+    private static Reactor rejectJournal(Reactor reactor) {
+        if (reactor.journal() != null) {
+            throw new IllegalStateException(reactor.name() + ": PipelineNioHandler does not support journal");
+        }
+        return reactor;
+    }
+
+    /**
+     * 把累积 Buffer 交给管道，管道中的解码阶段取走完整的帧，剩余部分留到下次读取
+     */
+    @Override
+    protected void decodeFrames() throws IOException {
+        input.flip();
+        try {
+            pipeline.fireChannelRead(input);
+        } finally {
+            // 借出后没有写回的队尾 Buffer 之后可能被发送、归还，不再保留引用
+            reserved = null;
+            input.compact();
+        }
+    }
+
+    /**
+     * 管道头部：把出站数据拷贝到发送队列，按绝对位置拷贝，不改变 msg 的状态。
+     * msg 是 {@link #reserve(int)} 借出的队尾 Buffer 时，数据已经在发送队列中，只需提交，不再拷贝
+     */
+    @Override
+    public void write(ByteBuffer msg) {
+        if (reserved != null) {
+            final ByteBuffer reserved = this.reserved;
+            this.reserved = null;
+            if (msg == reserved) {
+                // [position, limit) 是阶段直接写入的数据，紧接在已有数据之后。移动到数据末尾，恢复写模式
+                msg.position(msg.limit()).limit(msg.capacity());
+                return;
+            }
+            if (reserved.limit() != reserved.capacity()) {
+                // 已经写入但还没写回的数据在队尾 position 之后，再拷贝其他数据会覆盖它
+                throw new IllegalStateException("reserved buffer must be written before other messages");
+            }
+            // 借出后没有写入，放弃即可
+        }
+        final int length = msg.remaining();
+        final ByteBuffer out = outbound.tail(length);
+        out.put(out.position(), msg, msg.position(), length);
+        out.position(out.position() + length);
+    }
+
+    @Override
+    protected void close() {
+        final boolean open = state() != CLOSED;
+        super.close();
+        if (open) {
+            pipeline.fireHandlerRemoved();
+        }
+    }
+
+    @Override
+    public ByteBuffer reserve(int minWritable) {
+        reserved = outbound.tail(minWritable);
+        return reserved;
+    }
+
+    @Override
+    public void closeAfterFlush() {
+        setFlag(CLOSE_AFTER_FLUSH);
+    }
+
+    @Override
+    public PooledBufferAllocator allocator() {
+        return reactor.allocator;
+    }
+}
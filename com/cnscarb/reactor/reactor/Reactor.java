@@ -1,50 +1,198 @@
 package com.cnscarb.reactor.reactor;
 
+import com.cnscarb.reactor.buffer.PooledBufferAllocator;
+import com.cnscarb.reactor.journal.Journal;
+
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.net.SocketAddress;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Reactor implements Runnable {
     /**
-     * 选择器，NIO 组件，通知 Channel 就绪的事件
+     * Acceptor 每次被唤醒时默认最多接收的连接数
+     */
+    static final int MAX_ACCEPTS_PER_WAKEUP = 64;
+
+    /**
+     * 对象池中最多保留的已关闭 Handler 数量
+     */
+    static final int MAX_RECYCLED_HANDLERS = Integer.getInteger("reactor.maxRecycledHandlers", 1024);
+
+    /**
+     * select 连续多少次没有阻塞就返回 0 个事件后重建 Selector，0 表示不检测
      */
-    final Selector selector;
+    private static final int SELECTOR_AUTO_REBUILD_THRESHOLD = Integer.getInteger("reactor.selectorAutoRebuildThreshold", 512);
 
     /**
-     * Handler 的类型
+     * 选择器，NIO 组件，通知 Channel 就绪的事件。发生 epoll 空转时会被替换，其他线程唤醒它时需要读到最新的值
      */
-    final Class<?> handlerClass;
+    volatile Selector selector;
+
+    /**
+     * 替换进 Selector 内部的就绪 SelectionKey 集合，无法替换时为 null，使用 {@link Selector#selectedKeys()}
+     */
+    private SelectedSelectionKeySet selectedKeys;
+
+    /**
+     * 等待 IO 事件的方式
+     */
+    private volatile SelectStrategy selectStrategy = SelectStrategy.DEFAULT;
+
+    /**
+     * {@link SelectStrategy#BUSY_POLL} 模式下阻塞前反复 selectNow 的时间窗口
+     */
+    private volatile long busyPollNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("reactor.busyPollMicros", 50));
+
+    /**
+     * 每轮循环中 IO 处理时间所占的百分比，执行任务队列的时间不超过 IO 时间 * (100 - ioRatio) / ioRatio。
+     * 100 表示每轮执行完所有任务
+     */
+    private volatile int ioRatio = Integer.getInteger("reactor.ioRatio", 100);
+
+    /**
+     * select 连续没有阻塞就返回 0 个事件的次数
+     */
+    private int prematureSelectReturns;
+
+    /**
+     * 创建 Handler 的工厂
+     */
+    final HandlerFactory handlerFactory;
 
     /**
      * TCP 服务端 Socket，监听某个端口进来的客户端连接和请求
      */
     ServerSocketChannel serverSocket;
 
+    /**
+     * 为 Reactor 线程编号
+     */
+    private static final AtomicInteger REACTOR_ID = new AtomicInteger();
+
+    private final int id = REACTOR_ID.getAndIncrement();
+
+    /**
+     * Reactor 的名字，也是 Reactor 线程的名字，便于在线程转储和指标中区分各个 Reactor
+     */
+    private final String name = "reactor-" + id;
+
     /**
      * Reactor 的执行线程
      */
-    public final ExecutorService executor;
+    public final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+
+    /**
+     * 当前 Reactor 的 Buffer 分配器，只在 Reactor 线程中使用
+     */
+    public final PooledBufferAllocator allocator = new PooledBufferAllocator();
+
+    /**
+     * 当前 Reactor 的运行指标
+     */
+    public final ReactorMetrics metrics = new ReactorMetrics();
+
+    /**
+     * 已关闭、等待复用的 Handler，见 {@link NioHandler#RECYCLING}，只在 Reactor 线程中使用
+     */
+    final ArrayDeque<NioHandler> recycledHandlers = new ArrayDeque<>();
+
+    /**
+     * 当前 Reactor 的时间轮定时器，用于连接的读、写、空闲超时，只在 Reactor 线程中使用
+     */
+    public final HashedWheelTimer timer = new HashedWheelTimer(
+        Long.getLong("reactor.timerTickMillis", 100), TimeUnit.MILLISECONDS, 512);
+
+    /**
+     * 请求日志，null 表示不记录
+     */
+    private volatile Journal journal;
+
+    /**
+     * 响应缓存，null 表示不缓存，只在 Reactor 线程中使用
+     */
+    private volatile ResponseCache responseCache;
+
+    /**
+     * 直接监听端口时的连接数上限，只在 Reactor 线程中读取
+     */
+    private volatile int maxConnections = Integer.MAX_VALUE;
+
+    /**
+     * 由 {@link MultiReactorBootstrap} 设置：它接收的、分散在多个 Reactor 上的连接共享的连接数，
+     * 连接关闭时由 Handler 减一。null 表示该 Reactor 不属于任何 MultiReactorBootstrap
+     */
+    volatile AtomicInteger bootstrapConnections;
+
+    /**
+     * 新连接的超时配置，所有连接共享同一个实例
+     */
+    private volatile TimeoutConfig timeouts = TimeoutConfig.DEFAULT;
+
+    /**
+     * 已分配的连接序号，只在 Reactor 线程中使用
+     */
+    private long connectionSequence;
+
+    /**
+     * 本轮事件循环开始处理事件的时间，Handler 记录读写时间时使用，不必每次调用 {@link System#nanoTime()}
+     */
+    private long loopNanos = System.nanoTime();
+
+    /**
+     * 任务队列，其他线程提交给 Reactor 线程执行的任务（注册 Channel、修改 interestOps 等）。
+     * 多生产者（任意线程）单消费者（Reactor 线程）
+     */
+    private final Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Selector 是否已被唤醒（或 Reactor 线程正在处理事件，无需唤醒）。用于避免重复调用 {@link Selector#wakeup()}
+     */
+    private final AtomicBoolean wakenUp = new AtomicBoolean();
+
+    /**
+     * Reactor 线程是否已经启动，保证只启动一次
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * 执行 Reactor 事件循环的线程
+     */
+    private volatile Thread thread;
 
     /**
      * 直接创建 Reactor 使用
      */
-    public Reactor(int port, Class<?> handlerClass) throws IOException {
-        this.handlerClass = handlerClass;
-        executor = Executors.newSingleThreadExecutor();
+    public Reactor(int port, HandlerFactory handlerFactory) throws IOException {
+        this(new InetSocketAddress(port), handlerFactory);
+    }
+
+    /**
+     * 直接创建 Reactor 使用，监听 TCP 地址或者 Unix 域套接字地址（{@link java.net.UnixDomainSocketAddress}）
+     */
+    public Reactor(SocketAddress address, HandlerFactory handlerFactory) throws IOException {
+        this.handlerFactory = handlerFactory;
         selector = Selector.open();
-        serverSocket = ServerSocketChannel.open();
-        // 绑定服务端端口
-        serverSocket.socket().bind(new InetSocketAddress(port));
+        selectedKeys = SelectedSelectionKeySet.install(selector);
+        serverSocket = ServerChannels.open(address);
+        // 绑定服务端地址
+        ServerChannels.bind(serverSocket, address, 0);
         // 设置服务端 socket 为非阻塞模式
         serverSocket.configureBlocking(false);
         // 注册并关注一个 IO 事件，这里是 ACCEPT（接收客户端连接）
@@ -57,33 +205,306 @@ public class Reactor implements Runnable {
      * {@link ReactorGroup} 创建 Reactor 使用
      */
     public Reactor() throws IOException {
-        executor = Executors.newSingleThreadExecutor();
         selector = Selector.open();
-        this.handlerClass = null;
+        selectedKeys = SelectedSelectionKeySet.install(selector);
+        this.handlerFactory = null;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Reactor selectStrategy(SelectStrategy selectStrategy) {
+        this.selectStrategy = selectStrategy;
+        return this;
+    }
+
+    public Reactor busyPollMicros(long busyPollMicros) {
+        this.busyPollNanos = TimeUnit.MICROSECONDS.toNanos(busyPollMicros);
+        return this;
+    }
+
+    public Reactor ioRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio must be in (0, 100]: " + ioRatio);
+        }
+        this.ioRatio = ioRatio;
+        return this;
+    }
+
+    /**
+     * 把该 Reactor 上每个请求和响应记录到请求日志，null 表示不记录。
+     * 管道处理器（{@link PipelineNioHandler}）的请求和响应由管道阶段决定，无法记录，
+     * 使用它的 Reactor 设置请求日志时抛出 {@link IllegalStateException}
+     */
+    public Reactor journal(Journal journal) {
+        if (journal != null && handlerFactory != null && !handlerFactory.supportsJournal()) {
+            throw new IllegalStateException(name + ": handlers of this reactor do not support journal");
+        }
+        this.journal = journal;
+        return this;
+    }
+
+    Journal journal() {
+        return journal;
+    }
+
+    /**
+     * 该 Reactor 上新连接的超时配置，已经建立的连接不受影响。默认是 {@link TimeoutConfig#DEFAULT}
+     */
+    public Reactor timeouts(TimeoutConfig timeouts) {
+        this.timeouts = timeouts;
+        return this;
+    }
+
+    TimeoutConfig timeouts() {
+        return timeouts;
+    }
+
+    /**
+     * 为该 Reactor 创建响应缓存，占用 slots * slotSize 字节直接内存，slots 为 0 时关闭缓存。
+     * 只有沿用默认 {@link NioHandler#process} 的连接使用缓存
+     *
+     * @param slots    最多缓存的条目数
+     * @param slotSize 每个条目的最大字节数（请求加响应），更长的请求不缓存
+     */
+    public Reactor responseCache(int slots, int slotSize) {
+        this.responseCache = slots == 0 ? null : new ResponseCache(slots, slotSize, metrics);
+        return this;
+    }
+
+    ResponseCache responseCache() {
+        return responseCache;
+    }
+
+    /**
+     * 直接监听端口时的连接数上限，达到上限后新连接直接关闭，计入 {@link ReactorMetrics#rejectedConnections()}
+     */
+    public Reactor maxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * 为新连接分配编号：高 24 位是 Reactor 编号，低 40 位是连接序号，无需跨线程同步。只在 Reactor 线程中调用
+     */
+    long newConnectionId() {
+        return (long) id << 40 | ++connectionSequence;
+    }
+
+    /**
+     * UDP 没有连接，该 Reactor 上的所有数据报在请求日志中共用序号 0，TCP 连接的序号从 1 开始
+     */
+    long datagramConnectionId() {
+        return (long) id << 40;
     }
 
     @Override
     public void run() { // normally in a new Thread
+        thread = Thread.currentThread();
+        if (ReactorEvents.ENABLED) {
+            ReactorEvents.register(this);
+        }
         try {
             // 死循环，直到线程停止
             while (!Thread.interrupted()) {
-                // 阻塞，直到至少有一个通道的 IO 事件就绪
-                selector.select();
-                // 拿到就绪通道的选择键 SelectionKey 集合
-                final Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                // 遍历就绪通道的 SelectionKey
-                final Iterator<SelectionKey> iterator = selectedKeys.iterator();
-                while (iterator.hasNext()) {
-                    // 分发
-                    dispatch(iterator.next());
-                }
-                // 清空就绪通道的 SelectionKey 集合
-                selectedKeys.clear();
+                // 先标记为未唤醒，再检查任务队列。这样在检查之后提交的任务一定会唤醒 Selector
+                wakenUp.set(false);
+                final long selectStart = System.nanoTime();
+                select();
+                // Reactor 线程已醒，接下来会执行任务队列，其他线程提交任务时无需再唤醒 Selector
+                wakenUp.set(true);
+                final long workStart = System.nanoTime();
+                loopNanos = workStart;
+                metrics.workStarted(workStart);
+                // 分发就绪通道的 SelectionKey
+                final int keys = selectedKeys != null ? processSelectedKeysOptimized() : processSelectedKeysPlain();
+                final long ioEnd = System.nanoTime();
+                // 执行其他线程提交的任务。ioRatio 小于 100 时按本轮 IO 处理时间限制任务的执行时间，剩下的任务留到下一轮
+                final int ioRatio = this.ioRatio;
+                final int tasks = runAllTasks(ioRatio == 100 ? Long.MAX_VALUE : (ioEnd - workStart) * (100 - ioRatio) / ioRatio);
+                // 批量执行所有到期的定时任务
+                timer.expireTimeouts(System.nanoTime());
+                // 记录本轮等待和处理的时间，用于计算繁忙程度，并发布本轮的计数
+                metrics.recordLoop(selectStart, workStart, ioEnd, System.nanoTime(), keys, tasks);
             }
         } catch (IOException e) {
+            // select 失败，Selector 已不可用，Reactor 无法继续工作
+            System.err.println(name + " terminated: select failed");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 按照选择策略等待 IO 事件
+     */
+    private void select() throws IOException {
+        if (!taskQueue.isEmpty()) {
+            // 有待执行的任务，不阻塞
+            selector.selectNow();
+            return;
+        }
+        if (selectStrategy == SelectStrategy.BUSY_POLL && busyPoll()) {
+            return;
+        }
+        final long selectStart = System.nanoTime();
+        final long timeoutNanos = timer.nanosToNextTick(selectStart);
+        final int selected;
+        if (timeoutNanos < 0) {
+            // 阻塞，直到至少有一个通道的 IO 事件就绪，或者被其他线程提交任务唤醒
+            selected = selector.select();
+        } else if (timeoutNanos == 0) {
+            // 定时器的下一个 tick 已经到了
+            selector.selectNow();
+            return;
+        } else {
+            // 有等待中的定时任务，最多阻塞到下一个 tick。向上取整到毫秒，避免提前醒来空转
+            final long timeoutMillis = (timeoutNanos + 999_999) / 1_000_000;
+            selected = selector.select(timeoutMillis);
+            if (System.nanoTime() - selectStart >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                // 正常超时返回
+                prematureSelectReturns = 0;
+                return;
+            }
+        }
+        if (selected > 0 || !taskQueue.isEmpty() || Thread.currentThread().isInterrupted()) {
+            prematureSelectReturns = 0;
+            return;
+        }
+        // 没有事件、没有任务、没有超时却返回了，可能是 JDK epoll 空转的 bug，连续发生多次后重建 Selector
+        if (SELECTOR_AUTO_REBUILD_THRESHOLD > 0 && ++prematureSelectReturns >= SELECTOR_AUTO_REBUILD_THRESHOLD) {
+            prematureSelectReturns = 0;
+            rebuildSelector();
+            selector.selectNow();
         }
     }
 
+    /**
+     * 在 busyPollNanos 的时间窗口内反复 selectNow，不让出 CPU
+     *
+     * @return 窗口内有事件就绪或者有任务提交时返回 true，否则返回 false，调用方继续阻塞等待
+     */
+    private boolean busyPoll() throws IOException {
+        final long deadline = System.nanoTime() + busyPollNanos;
+        do {
+            if (selector.selectNow() > 0 || !taskQueue.isEmpty()) {
+                return true;
+            }
+            Thread.onSpinWait();
+        } while (System.nanoTime() - deadline < 0);
+        return false;
+    }
+
+    /**
+     * 打开一个新的 Selector，把旧 Selector 上的所有 Channel 连同关注的事件和附件迁移过去，然后关闭旧 Selector
+     */
+    private void rebuildSelector() {
+        final Selector oldSelector = selector;
+        final Selector newSelector;
+        try {
+            newSelector = Selector.open();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        final SelectedSelectionKeySet newSelectedKeys = SelectedSelectionKeySet.install(newSelector);
+        for (SelectionKey key : oldSelector.keys()) {
+            if (!key.isValid()) {
+                continue;
+            }
+            final Object attachment = key.attachment();
+            try {
+                final SelectionKey newKey = key.channel().register(newSelector, key.interestOps(), attachment);
+                key.cancel();
+                if (attachment instanceof SelectionHandler) {
+                    ((SelectionHandler) attachment).selectionKeyChanged(newKey);
+                }
+            } catch (ClosedChannelException | CancelledKeyException e) {
+                // Channel 在迁移过程中关闭，忽略
+            }
+        }
+        selector = newSelector;
+        selectedKeys = newSelectedKeys;
+        metrics.selectorRebuilds.increment();
+        try {
+            oldSelector.close();
+        } catch (IOException ignore) {
+        }
+        System.err.println("Selector rebuilt after " + SELECTOR_AUTO_REBUILD_THRESHOLD + " premature returns");
+    }
+
+    /**
+     * 关闭尚未启动的 Reactor 的 Selector，{@link ReactorGroup} 创建失败时清理使用
+     */
+    void closeSelector() {
+        try {
+            selector.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * 本轮事件循环开始处理事件的时间，只在 Reactor 线程中调用
+     */
+    public long nanoTime() {
+        return loopNanos;
+    }
+
+    /**
+     * 执行任务队列中的任务，最多执行 timeoutNanos。每 64 个任务检查一次时间，避免频繁调用 {@link System#nanoTime()}
+     *
+     * @return 执行的任务数
+     */
+    private int runAllTasks(long timeoutNanos) {
+        final long deadline = timeoutNanos == Long.MAX_VALUE ? 0 : System.nanoTime() + timeoutNanos;
+        int executed = 0;
+        Runnable task;
+        while ((task = taskQueue.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            if ((++executed & 63) == 0 && deadline != 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        return executed;
+    }
+
+    /**
+     * 按下标遍历数组实现的就绪集合，处理一个置空一个，让已关闭连接的 SelectionKey 尽快被回收
+     */
+    private int processSelectedKeysOptimized() {
+        final SelectionKey[] keys = selectedKeys.keys;
+        final int size = selectedKeys.size;
+        for (int i = 0; i < size; i++) {
+            final SelectionKey key = keys[i];
+            keys[i] = null;
+            dispatch(key);
+        }
+        selectedKeys.size = 0;
+        return size;
+    }
+
+    /**
+     * 无法替换就绪集合时，遍历 JDK 自带的 HashSet
+     */
+    private int processSelectedKeysPlain() {
+        // 拿到就绪通道的选择键 SelectionKey 集合
+        final Set<SelectionKey> keys = selector.selectedKeys();
+        final int size = keys.size();
+        // 遍历就绪通道的 SelectionKey
+        final Iterator<SelectionKey> iterator = keys.iterator();
+        while (iterator.hasNext()) {
+            // 分发
+            dispatch(iterator.next());
+        }
+        // 清空就绪通道的 SelectionKey 集合
+        keys.clear();
+        return size;
+    }
+
     /**
      * 分发事件，将就绪通道的注册键关联的处理器取出并执行
      * <p>
@@ -92,45 +513,140 @@ public class Reactor implements Runnable {
      * 在 SubReactor 中，就绪的是客户端 IO 事件，处理器是 Handler
      */
     private void dispatch(SelectionKey selectionKey) {
+        // 同一轮中排在前面的事件可能已经关闭了这个 Channel
+        if (!selectionKey.isValid()) {
+            return;
+        }
         // 获取 Selection 关联的处理器
-        final Runnable runnable = (Runnable) selectionKey.attachment();
-        if (runnable != null) {
+        final SelectionHandler handler = (SelectionHandler) selectionKey.attachment();
+        if (handler == null) {
+            return;
+        }
+        try {
             // 执行处理
-            runnable.run();
+            if (ReactorEvents.ENABLED) {
+                dispatchWithEvent(handler, selectionKey);
+            } else {
+                handler.handle(selectionKey);
+            }
+        } catch (RuntimeException e) {
+            // 一个 Handler 的异常不能终止整个 Reactor 上所有连接的事件循环
+            metrics.dispatchErrors.increment();
+            System.err.println(name + ": " + handler.getClass().getName() + " failed to handle events");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 分发并记录 JFR 事件，耗时超过阈值的分发会被记录下来
+     */
+    private void dispatchWithEvent(SelectionHandler handler, SelectionKey selectionKey) {
+        final ReactorEvents.DispatchEvent event = new ReactorEvents.DispatchEvent();
+        event.begin();
+        final int readyOps = selectionKey.readyOps();
+        handler.handle(selectionKey);
+        event.end();
+        if (event.shouldCommit()) {
+            event.reactor = name;
+            event.handler = handler.getClass();
+            event.readyOps = readyOps;
+            event.commit();
         }
     }
 
     /**
-     * 启动 Reactor 线程，执行 run 方法
+     * 启动 Reactor 线程，执行 run 方法。重复调用只会启动一次
      */
     public void startThread() {
-        executor.execute(this);
+        if (started.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * 当前线程是否为 Reactor 线程
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * 提交任务到 Reactor 线程执行。
+     * <p>
+     * 由其他线程提交时，仅在 Selector 可能阻塞时唤醒它，避免每次提交都调用 {@link Selector#wakeup()}
+     */
+    public void execute(Runnable task) {
+        taskQueue.offer(task);
+        metrics.tasksSubmitted.increment();
+        if (!inEventLoop()) {
+            startThread();
+            if (wakenUp.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
     }
 
-    public SelectionKey register(ServerSocketChannel serverSocket) throws ClosedChannelException {
-        SelectionKey selectionKey = serverSocket.register(selector, 0);
-        startThread();
-        return selectionKey;
+    /**
+     * 将 Channel 注册到当前 Reactor 的 Selector 上。注册操作在 Reactor 线程中执行，不会因 Selector 阻塞在 select() 上而阻塞调用线程
+     */
+    public void register(SelectableChannel channel, int interestOps, Object attachment) {
+        execute(() -> {
+            try {
+                channel.register(selector, interestOps, attachment);
+            } catch (ClosedChannelException e) {
+                // Channel 已关闭，忽略
+            }
+        });
     }
 
     /**
      * 处理客户端连接事件
      */
-    class Acceptor implements Runnable {
+    class Acceptor implements SelectionHandler {
+
+        private final ErrorLog acceptErrorLog = new ErrorLog();
+
         @Override
-        public void run() {
-            try {
-                // 接收客户端连接，返回客户端 SocketChannel。非阻塞模式下，没有客户端连接则直接返回 null
-                final SocketChannel socket = serverSocket.accept();
-                if (socket != null) {
+        public void handle(SelectionKey key) {
+            // 一次唤醒最多接收 MAX_ACCEPTS_PER_WAKEUP 个连接，避免积压的连接每个都要经过一轮 select
+            for (int i = 0; i < MAX_ACCEPTS_PER_WAKEUP; i++) {
+                final SocketChannel socket;
+                try {
+                    // 接收客户端连接，返回客户端 SocketChannel。非阻塞模式下，没有客户端连接则直接返回 null
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    // 例如文件描述符耗尽，本轮不再接收，等下一次 select
+                    metrics.acceptErrors.increment();
+                    acceptErrorLog.log(name + ": failed to accept connection", e);
+                    return;
+                }
+                if (socket == null) {
+                    return;
+                }
+                // 先占位再检查，连接关闭时由 Handler 减一
+                if (metrics.activeConnections.incrementAndGet() > maxConnections) {
+                    metrics.activeConnections.decrementAndGet();
+                    metrics.rejectedConnections.increment();
+                    try {
+                        socket.close();
+                    } catch (IOException ignore) {
+                    }
+                    continue;
+                }
+                metrics.acceptedConnections.increment();
+                try {
                     // 将提示发送给客户端
-                    socket.write(ByteBuffer.wrap("reactor> ".getBytes()));
-                    // 根据 Handler 类型，实例化 Handler
-                    final Constructor<?> constructor = handlerClass.getConstructor(Selector.class, SocketChannel.class);
-                    // 在 Handler 线程中处理客户端 IO 事件
-                    constructor.newInstance(selector, socket);
+                    socket.write(NioHandler.GREETING.duplicate());
+                    // 创建 Handler，在 Handler 中处理客户端 IO 事件
+                    handlerFactory.newHandler(Reactor.this, socket);
+                } catch (IOException e) {
+                    metrics.activeConnections.decrementAndGet();
+                    metrics.acceptErrors.increment();
+                    try {
+                        socket.close();
+                    } catch (IOException ignore) {
+                    }
                 }
-            } catch (Exception e) {
             }
         }
     }
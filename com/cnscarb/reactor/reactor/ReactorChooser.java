@@ -0,0 +1,21 @@
+package com.cnscarb.reactor.reactor;
+
+/**
+ * 从 {@link ReactorGroup} 中选择一个 Reactor 处理新连接，可能被多个 Main Reactor 线程并发调用，实现必须线程安全
+ *
+ * @see ReactorChoosers
+ */
+@FunctionalInterface
+public interface ReactorChooser {
+
+    Reactor next();
+
+    /**
+     * 为一组 Reactor 创建选择器
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        ReactorChooser newChooser(Reactor[] reactors);
+    }
+}
@@ -0,0 +1,133 @@
+package com.cnscarb.reactor.reactor;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内置的 Reactor 选择策略
+ */
+public final class ReactorChoosers {
+
+    /**
+     * 轮询。Reactor 数量是 2 的幂时用位运算代替取模，计数器无锁递增
+     */
+    public static final ReactorChooser.Factory ROUND_ROBIN = reactors -> isPowerOfTwo(reactors.length)
+        ? new PowerOfTwoRoundRobinChooser(reactors)
+        : new GenericRoundRobinChooser(reactors);
+
+    /**
+     * 选择活跃连接数最少的 Reactor，连接数相同时选择事件循环更空闲的
+     */
+    public static final ReactorChooser.Factory LEAST_CONNECTIONS = LeastConnectionsChooser::new;
+
+    /**
+     * 随机选两个 Reactor，取负载较低的一个。不用扫描所有 Reactor，也避免所有 Acceptor 同时涌向同一个“最空闲”的 Reactor
+     */
+    public static final ReactorChooser.Factory POWER_OF_TWO_CHOICES = PowerOfTwoChoicesChooser::new;
+
+    /**
+     * 事件循环繁忙程度（千分比）相差超过该值时，优先按繁忙程度比较，否则按连接数比较
+     */
+    private static final int BUSY_THRESHOLD_PERMILLE = 100;
+
+    private ReactorChoosers() {
+    }
+
+    private static boolean isPowerOfTwo(int value) {
+        return (value & -value) == value;
+    }
+
+    /**
+     * 比较两个 Reactor 的负载，a 更空闲时返回负数。
+     * 长连接的负载差别很大时只看连接数不准确，所以繁忙程度明显不同时以繁忙程度为准
+     */
+    static int compareLoad(Reactor a, Reactor b) {
+        final int busyA = a.metrics.busyPermille();
+        final int busyB = b.metrics.busyPermille();
+        if (Math.abs(busyA - busyB) > BUSY_THRESHOLD_PERMILLE) {
+            return Integer.compare(busyA, busyB);
+        }
+        final int connections = Integer.compare(a.metrics.activeConnections(), b.metrics.activeConnections());
+        return connections != 0 ? connections : Integer.compare(busyA, busyB);
+    }
+
+    private static final class PowerOfTwoRoundRobinChooser implements ReactorChooser {
+        private final AtomicInteger index = new AtomicInteger();
+        private final Reactor[] reactors;
+
+        PowerOfTwoRoundRobinChooser(Reactor[] reactors) {
+            this.reactors = reactors;
+        }
+
+        @Override
+        public Reactor next() {
+            return reactors[index.getAndIncrement() & reactors.length - 1];
+        }
+    }
+
+    private static final class GenericRoundRobinChooser implements ReactorChooser {
+        /**
+         * 使用 long 计数，避免 int 溢出后取模得到负数
+         */
+        private final AtomicLong index = new AtomicLong();
+        private final Reactor[] reactors;
+
+        GenericRoundRobinChooser(Reactor[] reactors) {
+            this.reactors = reactors;
+        }
+
+        @Override
+        public Reactor next() {
+            return reactors[(int) Math.abs(index.getAndIncrement() % reactors.length)];
+        }
+    }
+
+    private static final class LeastConnectionsChooser implements ReactorChooser {
+        private final Reactor[] reactors;
+
+        LeastConnectionsChooser(Reactor[] reactors) {
+            this.reactors = reactors;
+        }
+
+        @Override
+        public Reactor next() {
+            Reactor best = reactors[0];
+            for (int i = 1; i < reactors.length; i++) {
+                final Reactor reactor = reactors[i];
+                final int connections = Integer.compare(reactor.metrics.activeConnections(), best.metrics.activeConnections());
+                if (connections < 0
+                    || (connections == 0 && reactor.metrics.busyPermille() < best.metrics.busyPermille())) {
+                    best = reactor;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class PowerOfTwoChoicesChooser implements ReactorChooser {
+        private final Reactor[] reactors;
+
+        PowerOfTwoChoicesChooser(Reactor[] reactors) {
+            this.reactors = reactors;
+        }
+
+        @Override
+        public Reactor next() {
+            final int n = reactors.length;
+            if (n == 1) {
+                return reactors[0];
+            }
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int first = random.nextInt(n);
+            // 在其余 n - 1 个中再选一个，保证两个不同
+            int second = random.nextInt(n - 1);
+            if (second >= first) {
+                second++;
+            }
+            final Reactor a = reactors[first];
+            final Reactor b = reactors[second];
+            return compareLoad(a, b) <= 0 ? a : b;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.cnscarb.reactor.reactor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Reactor 的自定义 JFR 事件，-Dreactor.jfr=true 时启用，否则事件循环中不会用到。
+ * 启用后通过 {@code jcmd <pid> JFR.start} 就能在生产环境中看到每个 Reactor 的状态和耗时过长的分发，不需要挂 profiler
+ */
+final class ReactorEvents {
+
+    static final boolean ENABLED = Boolean.getBoolean("reactor.jfr");
+
+    private ReactorEvents() {
+    }
+
+    /**
+     * 一次事件分发，只记录超过阈值（默认 10 ms）的，用于定位阻塞 Reactor 线程的 Handler
+     */
+    @Name("com.cnscarb.reactor.Dispatch")
+    @Label("Reactor Dispatch")
+    @Category("Reactor")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class DispatchEvent extends Event {
+
+        @Label("Reactor")
+        String reactor;
+
+        @Label("Handler")
+        Class<?> handler;
+
+        @Label("Ready Ops")
+        int readyOps;
+    }
+
+    /**
+     * 每个 Reactor 的周期统计，计数是相对上一个周期的增量
+     */
+    @Name("com.cnscarb.reactor.Statistics")
+    @Label("Reactor Statistics")
+    @Category("Reactor")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class StatisticsEvent extends Event {
+
+        @Label("Reactor")
+        String reactor;
+
+        @Label("Active Connections")
+        int activeConnections;
+
+        @Label("Busy Permille")
+        int busyPermille;
+
+        @Label("Stalled")
+        @Timespan
+        long stalled;
+
+        @Label("Select Time")
+        @Timespan
+        long selectTime;
+
+        @Label("IO Time")
+        @Timespan
+        long ioTime;
+
+        @Label("Task Time")
+        @Timespan
+        long taskTime;
+
+        @Label("Loops")
+        long loops;
+
+        @Label("Selected Keys")
+        long selectedKeys;
+
+        @Label("Task Queue Depth")
+        long taskQueueDepth;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+
+        @Label("Process P99")
+        @Timespan
+        long processP99;
+
+        @Label("Dispatch Errors")
+        long dispatchErrors;
+    }
+
+    /**
+     * 为 Reactor 注册周期统计事件，由 JFR 的周期线程读取指标快照
+     */
+    static void register(Reactor reactor) {
+        FlightRecorder.addPeriodicEvent(StatisticsEvent.class, new Runnable() {
+
+            private ReactorMetrics.Snapshot previous = reactor.metrics.snapshot();
+
+            @Override
+            public void run() {
+                final ReactorMetrics.Snapshot current = reactor.metrics.snapshot();
+                final StatisticsEvent event = new StatisticsEvent();
+                event.reactor = reactor.name();
+                event.activeConnections = current.activeConnections();
+                event.busyPermille = current.busyPermille();
+                event.stalled = current.stalledNanos();
+                event.selectTime = current.selectNanos() - previous.selectNanos();
+                event.ioTime = current.ioNanos() - previous.ioNanos();
+                event.taskTime = current.taskNanos() - previous.taskNanos();
+                event.loops = current.loops() - previous.loops();
+                event.selectedKeys = current.selectedKeys() - previous.selectedKeys();
+                event.taskQueueDepth = current.taskQueueDepth();
+                event.bytesRead = current.bytesRead() - previous.bytesRead();
+                event.bytesWritten = current.bytesWritten() - previous.bytesWritten();
+                event.processP99 = current.processNanosAtPercentile(99);
+                event.dispatchErrors = current.dispatchErrors() - previous.dispatchErrors();
+                event.commit();
+                previous = current;
+            }
+        });
+    }
+}
@@ -1,9 +1,12 @@
 package com.cnscarb.reactor.reactor;
 
+import com.cnscarb.reactor.journal.Journal;
+
 import java.io.IOException;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.ServerSocketChannel;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectableChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ReactorGroup {
     /**
@@ -12,33 +15,130 @@ public class ReactorGroup {
     final Reactor[] children;
 
     /**
-     * 计数器，用来选择下一个 Reactor
+     * 选择下一个 Reactor 的策略
      */
-    int next = 0;
+    private final ReactorChooser chooser;
 
     public ReactorGroup(int nThreads) {
+        this(nThreads, ReactorChoosers.ROUND_ROBIN);
+    }
+
+    public ReactorGroup(int nThreads, ReactorChooser.Factory chooserFactory) {
         children = new Reactor[nThreads];
 
         for (int i = 0; i < nThreads; i++) {
             try {
                 children[i] = new Reactor();
             } catch (IOException e) {
+                // 通常是文件描述符耗尽，关闭已经打开的 Selector，不留下部分创建的 ReactorGroup
+                for (int j = 0; j < i; j++) {
+                    children[j].closeSelector();
+                }
+                throw new UncheckedIOException("failed to open selector for reactor " + i, e);
+            }
+        }
+        chooser = chooserFactory.newChooser(children);
+    }
+
+    /**
+     * 设置所有 Reactor 等待 IO 事件的方式，运行中也可以修改
+     */
+    public ReactorGroup selectStrategy(SelectStrategy selectStrategy) {
+        for (Reactor reactor : children) {
+            reactor.selectStrategy(selectStrategy);
+        }
+        return this;
+    }
+
+    public ReactorGroup busyPollMicros(long busyPollMicros) {
+        for (Reactor reactor : children) {
+            reactor.busyPollMicros(busyPollMicros);
+        }
+        return this;
+    }
+
+    public ReactorGroup ioRatio(int ioRatio) {
+        for (Reactor reactor : children) {
+            reactor.ioRatio(ioRatio);
+        }
+        return this;
+    }
+
+    /**
+     * 所有 Reactor 把请求和响应记录到同一个请求日志，null 表示不记录。
+     * 不支持请求日志的 Handler 见 {@link Reactor#journal(Journal)}
+     */
+    public ReactorGroup journal(Journal journal) {
+        for (Reactor reactor : children) {
+            reactor.journal(journal);
+        }
+        return this;
+    }
+
+    boolean hasJournal() {
+        for (Reactor reactor : children) {
+            if (reactor.journal() != null) {
+                return true;
             }
         }
+        return false;
     }
 
+    /**
+     * 所有 Reactor 上新连接的超时配置，见 {@link Reactor#timeouts(TimeoutConfig)}
+     */
+    public ReactorGroup timeouts(TimeoutConfig timeouts) {
+        for (Reactor reactor : children) {
+            reactor.timeouts(timeouts);
+        }
+        return this;
+    }
+
+    /**
+     * 每个 Reactor 各自创建一个响应缓存，互不共享，见 {@link Reactor#responseCache(int, int)}
+     */
+    public ReactorGroup responseCache(int slots, int slotSize) {
+        for (Reactor reactor : children) {
+            reactor.responseCache(slots, slotSize);
+        }
+        return this;
+    }
+
+    /**
+     * 选择下一个 Reactor，线程安全
+     */
     public Reactor next() {
-        final Reactor reactor = children[next];
-        if (++next == children.length) {
-            next = 0;
+        return chooser.next();
+    }
+
+    /**
+     * 所有 Reactor 上的活跃连接数之和
+     */
+    public int activeConnections() {
+        int connections = 0;
+        for (Reactor reactor : children) {
+            connections += reactor.metrics.activeConnections();
         }
-        return reactor;
+        return connections;
     }
 
     /**
-     * 注册 ServerSocketChannel 到 ReactorGroup 中的下一个选中的 Reactor
+     * 所有 Reactor 的指标快照，顺序与 Reactor 创建顺序一致
      */
-    public SelectionKey register(ServerSocketChannel serverSocket) throws ClosedChannelException {
-        return next().register(serverSocket);
+    public List<ReactorMetrics.Snapshot> metrics() {
+        final List<ReactorMetrics.Snapshot> snapshots = new ArrayList<>(children.length);
+        for (Reactor reactor : children) {
+            snapshots.add(reactor.metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 注册 Channel 到 ReactorGroup 中的下一个选中的 Reactor，注册在该 Reactor 的线程中异步完成
+     */
+    public Reactor register(SelectableChannel channel, int interestOps, Object attachment) {
+        final Reactor reactor = next();
+        reactor.register(channel, interestOps, attachment);
+        return reactor;
     }
 }
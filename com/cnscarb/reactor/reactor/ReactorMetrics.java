@@ -0,0 +1,535 @@
+package com.cnscarb.reactor.reactor;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reactor 的运行指标，任意线程通过 {@link #snapshot()} 读取
+ * <p>
+ * 可能由多个线程更新的计数器使用 {@link LongAdder}（分段计数，写入时不争抢同一个缓存行）。
+ * 只由 Reactor 线程更新的计数器是普通字段，Reactor 线程每轮事件循环结束时写一次 volatile 字段 {@link #busySince} 发布，
+ * 读取方先读 volatile 字段再读普通字段，能看到上一轮结束时的值，事件循环中不需要原子操作
+ */
+public class ReactorMetrics {
+
+    /**
+     * 当前 Reactor 上的活跃连接数，包括已被接收、正在交给该 Reactor 创建 Handler 的连接
+     */
+    final AtomicInteger activeConnections = new AtomicInteger();
+
+    /**
+     * 作为 Acceptor 接收的连接数
+     */
+    final LongAdder acceptedConnections = new LongAdder();
+
+    /**
+     * 作为 Acceptor 因连接数超过上限而拒绝的连接数
+     */
+    final LongAdder rejectedConnections = new LongAdder();
+
+    /**
+     * 因读、写或空闲超时而关闭的连接数
+     */
+    final LongAdder timedOutConnections = new LongAdder();
+
+    /**
+     * 因 select 空转而重建 Selector 的次数
+     */
+    final LongAdder selectorRebuilds = new LongAdder();
+
+    /**
+     * 接收连接或为新连接创建 Handler 失败的次数
+     */
+    final LongAdder acceptErrors = new LongAdder();
+
+    /**
+     * 处理器分发事件时抛出未捕获异常的次数
+     */
+    final LongAdder dispatchErrors = new LongAdder();
+
+    /**
+     * 提交到任务队列的任务数，减去已执行的任务数就是任务队列的长度
+     */
+    final LongAdder tasksSubmitted = new LongAdder();
+
+    /**
+     * 连接因发送队列超过高水位线而变为不可写的次数
+     */
+    final LongAdder unwritableEvents = new LongAdder();
+
+    /**
+     * 连接因发送队列降到低水位线以下而恢复可写的次数
+     */
+    final LongAdder writableEvents = new LongAdder();
+
+    /**
+     * 以下字段只由 Reactor 线程写入：事件循环轮数，select 等待、处理 IO 事件、执行任务和定时任务的累计时间，
+     * 就绪的 SelectionKey 数，执行的任务数，读写的字节数
+     */
+    private long loops;
+    private long selectNanos;
+    private long ioNanos;
+    private long taskNanos;
+    private long selectedKeys;
+    private long tasksExecuted;
+    private long bytesRead;
+    private long bytesWritten;
+
+    /**
+     * 业务处理延迟：每批请求（一次读取中的所有完整帧）从开始处理到响应写入发送队列的时间，只由 Reactor 线程写入。
+     * processBuckets[i] 是延迟在 [2^i, 2^(i+1)) 纳秒内的批数
+     */
+    private long processedBatches;
+    private long processNanos;
+    private long maxProcessNanos;
+    private final long[] processBuckets = new long[64];
+
+    /**
+     * 响应缓存的命中、未命中、淘汰和拒绝准入次数，由 {@link ResponseCache} 在 Reactor 线程中写入
+     */
+    long cacheHits;
+    long cacheMisses;
+    long cacheEvictions;
+    long cacheRejections;
+
+    /**
+     * 被丢弃、没有回复的数据报数：超过最大长度，或者回复会比请求长，由 {@link DatagramHandler} 在 Reactor 线程中写入
+     */
+    long droppedDatagrams;
+
+    /**
+     * Reactor 线程本轮开始处理事件的时间，正在 select 时为 0。同时用于发布只由 Reactor 线程写入的计数器
+     */
+    private volatile long busySince;
+
+    /**
+     * 统计繁忙程度的时间窗口
+     */
+    private static final long BUSY_WINDOW_NANOS = 100_000_000L;
+
+    /**
+     * 最近一个时间窗口内事件循环处理事件和任务的时间占比（千分比），Reactor 线程写入，选择器读取
+     */
+    private volatile int busyPermille;
+
+    /**
+     * busyPermille 的更新时间
+     */
+    private volatile long busyUpdatedAt;
+
+    /**
+     * 当前时间窗口的开始时间和其中的处理时间，只在 Reactor 线程中访问
+     */
+    private long windowStart;
+    private long windowBusyNanos;
+
+    /**
+     * select 返回、开始处理事件时由 Reactor 线程调用
+     */
+    void workStarted(long workStart) {
+        busySince = workStart;
+    }
+
+    /**
+     * 记录读取的字节数，由 Reactor 线程调用
+     */
+    void recordRead(long bytes) {
+        bytesRead += bytes;
+    }
+
+    /**
+     * 记录写出的字节数，由 Reactor 线程调用
+     */
+    void recordWrite(long bytes) {
+        bytesWritten += bytes;
+    }
+
+    /**
+     * 记录一批请求的处理延迟，由 Reactor 线程调用
+     */
+    void recordProcess(long nanos) {
+        processedBatches++;
+        processNanos += nanos;
+        if (nanos > maxProcessNanos) {
+            maxProcessNanos = nanos;
+        }
+        processBuckets[63 - Long.numberOfLeadingZeros(Math.max(1, nanos))]++;
+    }
+
+    /**
+     * 记录一轮事件循环并发布本轮的计数，由 Reactor 线程调用
+     *
+     * @param selectStart 开始 select 的时间
+     * @param workStart   select 返回、开始处理的时间
+     * @param ioEnd       处理完就绪事件、开始执行任务的时间
+     * @param end         本轮处理结束的时间
+     * @param keys        本轮就绪的 SelectionKey 数
+     * @param tasks       本轮执行的任务数
+     */
+    void recordLoop(long selectStart, long workStart, long ioEnd, long end, int keys, int tasks) {
+        loops++;
+        selectNanos += workStart - selectStart;
+        ioNanos += ioEnd - workStart;
+        taskNanos += end - ioEnd;
+        selectedKeys += keys;
+        tasksExecuted += tasks;
+        if (windowStart == 0) {
+            windowStart = selectStart;
+        }
+        windowBusyNanos += end - workStart;
+        final long elapsed = end - windowStart;
+        if (elapsed >= BUSY_WINDOW_NANOS) {
+            busyPermille = (int) (windowBusyNanos * 1000 / elapsed);
+            busyUpdatedAt = end;
+            windowStart = end;
+            windowBusyNanos = 0;
+        }
+        busySince = 0;
+    }
+
+    /**
+     * 最近一段时间事件循环的繁忙程度，0 ~ 1000
+     */
+    public int busyPermille() {
+        final long now = System.nanoTime();
+        final long busySince = this.busySince;
+        if (busySince != 0 && now - busySince > BUSY_WINDOW_NANOS) {
+            // 本轮处理已经超过一个时间窗口，Reactor 线程卡在某次分发或任务中，是最忙的，不应再分配新连接
+            return 1000;
+        }
+        if (now - busyUpdatedAt > 2 * BUSY_WINDOW_NANOS) {
+            // 长时间没有更新，而且没有卡在处理中，说明 Reactor 一直阻塞在 select 上（或刚从 select 返回），是空闲的
+            return 0;
+        }
+        return busyPermille;
+    }
+
+    public int activeConnections() {
+        return activeConnections.get();
+    }
+
+    public long acceptedConnections() {
+        return acceptedConnections.sum();
+    }
+
+    public long rejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    public long timedOutConnections() {
+        return timedOutConnections.sum();
+    }
+
+    public long selectorRebuilds() {
+        return selectorRebuilds.sum();
+    }
+
+    public long acceptErrors() {
+        return acceptErrors.sum();
+    }
+
+    public long dispatchErrors() {
+        return dispatchErrors.sum();
+    }
+
+    public long unwritableEvents() {
+        return unwritableEvents.sum();
+    }
+
+    public long writableEvents() {
+        return writableEvents.sum();
+    }
+
+    /**
+     * 读取当前所有指标，可以在任意线程中调用，不影响 Reactor 线程
+     */
+    public Snapshot snapshot() {
+        final long now = System.nanoTime();
+        // 先读 volatile 字段，保证能看到 Reactor 线程上一轮发布的计数
+        final long busySince = this.busySince;
+        return new Snapshot(this, now, busySince == 0 ? 0 : Math.max(0, now - busySince));
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * 某一时刻的指标，两个快照的计数相减得到一段时间内的增量
+     */
+    public static final class Snapshot {
+
+        private final long timestamp;
+        private final int activeConnections;
+        private final long acceptedConnections;
+        private final long rejectedConnections;
+        private final long timedOutConnections;
+        private final long acceptErrors;
+        private final long dispatchErrors;
+        private final long selectorRebuilds;
+        private final long unwritableEvents;
+        private final long writableEvents;
+        private final int busyPermille;
+        private final long stalledNanos;
+        private final long loops;
+        private final long selectNanos;
+        private final long ioNanos;
+        private final long taskNanos;
+        private final long selectedKeys;
+        private final long tasksExecuted;
+        private final long taskQueueDepth;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long processedBatches;
+        private final long processNanos;
+        private final long maxProcessNanos;
+        private final long[] processBuckets;
+        private final long cacheHits;
+        private final long cacheMisses;
+        private final long cacheEvictions;
+        private final long cacheRejections;
+        private final long droppedDatagrams;
+
+        private Snapshot(ReactorMetrics metrics, long timestamp, long stalledNanos) {
+            this.timestamp = timestamp;
+            this.stalledNanos = stalledNanos;
+            // 只由 Reactor 线程写入的字段
+            this.loops = metrics.loops;
+            this.selectNanos = metrics.selectNanos;
+            this.ioNanos = metrics.ioNanos;
+            this.taskNanos = metrics.taskNanos;
+            this.selectedKeys = metrics.selectedKeys;
+            this.tasksExecuted = metrics.tasksExecuted;
+            this.bytesRead = metrics.bytesRead;
+            this.bytesWritten = metrics.bytesWritten;
+            this.processedBatches = metrics.processedBatches;
+            this.processNanos = metrics.processNanos;
+            this.maxProcessNanos = metrics.maxProcessNanos;
+            this.processBuckets = metrics.processBuckets.clone();
+            this.cacheHits = metrics.cacheHits;
+            this.cacheMisses = metrics.cacheMisses;
+            this.cacheEvictions = metrics.cacheEvictions;
+            this.cacheRejections = metrics.cacheRejections;
+            this.droppedDatagrams = metrics.droppedDatagrams;
+            // 任务先提交后执行，后读提交数，队列长度不会为负
+            this.taskQueueDepth = Math.max(0, metrics.tasksSubmitted.sum() - tasksExecuted);
+            this.activeConnections = metrics.activeConnections();
+            this.acceptedConnections = metrics.acceptedConnections();
+            this.rejectedConnections = metrics.rejectedConnections();
+            this.timedOutConnections = metrics.timedOutConnections();
+            this.acceptErrors = metrics.acceptErrors();
+            this.dispatchErrors = metrics.dispatchErrors();
+            this.selectorRebuilds = metrics.selectorRebuilds();
+            this.unwritableEvents = metrics.unwritableEvents();
+            this.writableEvents = metrics.writableEvents();
+            this.busyPermille = metrics.busyPermille();
+        }
+
+        /**
+         * 快照的时间，{@link System#nanoTime()}
+         */
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public int activeConnections() {
+            return activeConnections;
+        }
+
+        public long acceptedConnections() {
+            return acceptedConnections;
+        }
+
+        public long rejectedConnections() {
+            return rejectedConnections;
+        }
+
+        public long timedOutConnections() {
+            return timedOutConnections;
+        }
+
+        public long acceptErrors() {
+            return acceptErrors;
+        }
+
+        public long dispatchErrors() {
+            return dispatchErrors;
+        }
+
+        public long selectorRebuilds() {
+            return selectorRebuilds;
+        }
+
+        public long unwritableEvents() {
+            return unwritableEvents;
+        }
+
+        public long writableEvents() {
+            return writableEvents;
+        }
+
+        /**
+         * 最近一段时间事件循环的繁忙程度，0 ~ 1000
+         */
+        public int busyPermille() {
+            return busyPermille;
+        }
+
+        /**
+         * Reactor 线程本轮已经处理了多久，正在 select 时为 0。持续增大说明 Reactor 线程被某个 Handler 或任务阻塞
+         */
+        public long stalledNanos() {
+            return stalledNanos;
+        }
+
+        public long loops() {
+            return loops;
+        }
+
+        /**
+         * 阻塞在 select 上的累计时间
+         */
+        public long selectNanos() {
+            return selectNanos;
+        }
+
+        /**
+         * 处理就绪事件的累计时间
+         */
+        public long ioNanos() {
+            return ioNanos;
+        }
+
+        /**
+         * 执行任务队列和定时任务的累计时间
+         */
+        public long taskNanos() {
+            return taskNanos;
+        }
+
+        public long selectedKeys() {
+            return selectedKeys;
+        }
+
+        /**
+         * 平均每次 select 就绪的 SelectionKey 数
+         */
+        public double keysPerSelect() {
+            return loops == 0 ? 0 : (double) selectedKeys / loops;
+        }
+
+        public long tasksExecuted() {
+            return tasksExecuted;
+        }
+
+        /**
+         * 任务队列中等待执行的任务数
+         */
+        public long taskQueueDepth() {
+            return taskQueueDepth;
+        }
+
+        public long bytesRead() {
+            return bytesRead;
+        }
+
+        public long bytesWritten() {
+            return bytesWritten;
+        }
+
+        public long processedBatches() {
+            return processedBatches;
+        }
+
+        public long processNanos() {
+            return processNanos;
+        }
+
+        public long maxProcessNanos() {
+            return maxProcessNanos;
+        }
+
+        /**
+         * 业务处理延迟的百分位估计值，返回所在 2 的幂区间的上界，只会高估
+         *
+         * @param percentile 0 ~ 100
+         */
+        public long processNanosAtPercentile(double percentile) {
+            if (processedBatches == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * processedBatches));
+            long seen = 0;
+            for (int i = 0; i < processBuckets.length; i++) {
+                seen += processBuckets[i];
+                if (seen >= rank) {
+                    return i == 63 ? Long.MAX_VALUE : Math.min((1L << (i + 1)) - 1, maxProcessNanos);
+                }
+            }
+            return maxProcessNanos;
+        }
+
+        public long cacheHits() {
+            return cacheHits;
+        }
+
+        public long cacheMisses() {
+            return cacheMisses;
+        }
+
+        /**
+         * 缓存已满时为新请求淘汰的条目数
+         */
+        public long cacheEvictions() {
+            return cacheEvictions;
+        }
+
+        /**
+         * 缓存已满、新请求的访问频率不高于淘汰对象而没有放入缓存的次数
+         */
+        public long cacheRejections() {
+            return cacheRejections;
+        }
+
+        /**
+         * 被丢弃、没有回复的数据报数，见 {@link DatagramHandler}
+         */
+        public long droppedDatagrams() {
+            return droppedDatagrams;
+        }
+
+        /**
+         * 响应缓存的命中率，未启用缓存时为 0
+         */
+        public double cacheHitRatio() {
+            final long lookups = cacheHits + cacheMisses;
+            return lookups == 0 ? 0 : (double) cacheHits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            final long loopNanos = selectNanos + ioNanos + taskNanos;
+            return "ReactorMetrics{activeConnections=" + activeConnections
+                + ", acceptedConnections=" + acceptedConnections
+                + ", rejectedConnections=" + rejectedConnections
+                + ", timedOutConnections=" + timedOutConnections
+                + ", acceptErrors=" + acceptErrors
+                + ", dispatchErrors=" + dispatchErrors
+                + ", busyPermille=" + busyPermille
+                + ", stalledMillis=" + stalledNanos / 1_000_000
+                + ", selectPermille=" + (loopNanos == 0 ? 0 : selectNanos * 1000 / loopNanos)
+                + ", keysPerSelect=" + String.format(Locale.ROOT, "%.2f", keysPerSelect())
+                + ", taskQueueDepth=" + taskQueueDepth
+                + ", bytesRead=" + bytesRead
+                + ", bytesWritten=" + bytesWritten
+                + ", processP99Micros=" + processNanosAtPercentile(99) / 1000
+                + ", cacheHitRatio=" + String.format(Locale.ROOT, "%.3f", cacheHitRatio())
+                + ", droppedDatagrams=" + droppedDatagrams
+                + ", selectorRebuilds=" + selectorRebuilds
+                + ", unwritableEvents=" + unwritableEvents
+                + ", writableEvents=" + writableEvents + '}';
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.cnscarb.reactor.reactor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 响应缓存：以请求帧的原始字节为键，缓存编码好的完整响应（含提示符），命中时跳过解码、转换和编码，直接复制到发送队列。
+ * <p>
+ * 每个 Reactor 一个实例，只在 Reactor 线程中使用，没有跨线程竞争。键和响应存放在一块直接内存中，按固定大小的槽分配，
+ * 总内存固定为 slots * slotSize；槽的元数据是几个基本类型数组，不为每个条目创建对象，查找和写入都不分配。
+ * 查找使用线性探测的索引表；淘汰使用 CLOCK，准入使用 TinyLFU：缓存已满时，
+ * 新请求的估计访问频率高于 CLOCK 选出的淘汰对象才会替换它，只出现一次的请求不会挤掉热点请求。
+ * <p>
+ * 命中时把响应复制到连接的发送 Buffer，而不是把缓存中的内存直接加入发送队列：槽随时可能被淘汰复用，
+ * 直接引用会让还没发出去的数据被覆盖。复制只是一次内存拷贝，与处理请求相比开销很小
+ */
+public final class ResponseCache {
+
+    private static final int EMPTY = -1;
+
+    private final ReactorMetrics metrics;
+
+    /**
+     * 所有槽的存储，每个槽先存键再存响应
+     */
+    private final ByteBuffer arena;
+
+    /**
+     * 用于比较键的 arena 视图，只修改它的 position 和 limit
+     */
+    private final ByteBuffer keyView;
+
+    private final int slots;
+
+    private final int slotSize;
+
+    private final long[] hashes;
+
+    private final int[] keyLengths;
+
+    private final int[] responseLengths;
+
+    /**
+     * CLOCK 的访问位，命中时置位，指针经过时清除
+     */
+    private final boolean[] referenced;
+
+    /**
+     * 线性探测的索引表，保存槽号，容量是不小于 2 * slots 的 2 的幂
+     */
+    private final int[] table;
+
+    private final int tableMask;
+
+    private final FrequencySketch sketch;
+
+    /**
+     * 已使用的槽数，未满时按顺序分配新槽
+     */
+    private int size;
+
+    /**
+     * CLOCK 指针
+     */
+    private int hand;
+
+    /**
+     * @param slots    最多缓存的条目数
+     * @param slotSize 每个槽的字节数，键和响应的长度之和超过它的请求不缓存
+     * @param metrics  命中、未命中、淘汰和拒绝准入的次数记录在 Reactor 的指标中
+     */
+    public ResponseCache(int slots, int slotSize, ReactorMetrics metrics) {
+        if (slots <= 0 || slotSize <= 0 || (long) slots * slotSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid cache size: " + slots + " * " + slotSize);
+        }
+        this.metrics = metrics;
+        this.slots = slots;
+        this.slotSize = slotSize;
+        this.arena = ByteBuffer.allocateDirect(slots * slotSize);
+        this.keyView = arena.duplicate();
+        this.hashes = new long[slots];
+        this.keyLengths = new int[slots];
+        this.responseLengths = new int[slots];
+        this.referenced = new boolean[slots];
+        this.table = new int[Integer.highestOneBit(Math.max(2, slots) * 2 - 1) << 1];
+        this.tableMask = table.length - 1;
+        Arrays.fill(table, EMPTY);
+        this.sketch = new FrequencySketch(slots);
+    }
+
+    /**
+     * 计算 [offset, offset + length) 的 64 位哈希，按绝对位置读取，不构造 String，不修改 Buffer 的状态
+     */
+    public static long hash(ByteBuffer buffer, int offset, int length) {
+        final int end = offset + length;
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            h = Long.rotateLeft(h ^ buffer.getLong(i) * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        for (; i < end; i++) {
+            h = (h ^ (buffer.get(i) & 0xff)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * 查找请求帧 [position, limit) 对应的响应，同时记录一次访问
+     *
+     * @param hash {@link #hash(ByteBuffer, int, int)} 的结果
+     * @return 命中时返回槽号，否则返回 -1
+     */
+    public int get(long hash, ByteBuffer frame) {
+        sketch.increment(hash);
+        final int length = frame.remaining();
+        for (int i = (int) hash & tableMask; table[i] != EMPTY; i = (i + 1) & tableMask) {
+            final int slot = table[i];
+            if (hashes[slot] == hash && keyLengths[slot] == length && keyEquals(slot, frame)) {
+                referenced[slot] = true;
+                metrics.cacheHits++;
+                return slot;
+            }
+        }
+        metrics.cacheMisses++;
+        return -1;
+    }
+
+    private boolean keyEquals(int slot, ByteBuffer frame) {
+        final int base = slot * slotSize;
+        keyView.clear().position(base).limit(base + keyLengths[slot]);
+        return frame.mismatch(keyView) < 0;
+    }
+
+    /**
+     * 命中的响应长度
+     */
+    public int responseLength(int slot) {
+        return responseLengths[slot];
+    }
+
+    /**
+     * 把命中的响应复制到 out，调用方需保证剩余空间不小于 {@link #responseLength(int)}
+     */
+    public void copyResponse(int slot, ByteBuffer out) {
+        final int length = responseLengths[slot];
+        out.put(out.position(), arena, slot * slotSize + keyLengths[slot], length);
+        out.position(out.position() + length);
+    }
+
+    /**
+     * 未命中的请求处理完之后放入缓存。缓存已满时由 CLOCK 选出淘汰对象，新请求的访问频率更高才替换
+     */
+    public void put(long hash, ByteBuffer key, int keyOffset, int keyLength,
+                    ByteBuffer response, int responseOffset, int responseLength) {
+        if (keyLength + responseLength > slotSize) {
+            return;
+        }
+        final int slot;
+        if (size < slots) {
+            slot = size++;
+        } else {
+            final int victim = victim();
+            if (sketch.frequency(hash) <= sketch.frequency(hashes[victim])) {
+                metrics.cacheRejections++;
+                return;
+            }
+            remove(victim);
+            metrics.cacheEvictions++;
+            slot = victim;
+        }
+        final int base = slot * slotSize;
+        arena.put(base, key, keyOffset, keyLength);
+        arena.put(base + keyLength, response, responseOffset, responseLength);
+        hashes[slot] = hash;
+        keyLengths[slot] = keyLength;
+        responseLengths[slot] = responseLength;
+        referenced[slot] = false;
+        int i = (int) hash & tableMask;
+        while (table[i] != EMPTY) {
+            i = (i + 1) & tableMask;
+        }
+        table[i] = slot;
+    }
+
+    /**
+     * CLOCK：跳过并清除访问位已置位的槽，返回第一个访问位为空的槽
+     */
+    private int victim() {
+        while (true) {
+            final int slot = hand;
+            hand = hand + 1 == slots ? 0 : hand + 1;
+            if (!referenced[slot]) {
+                return slot;
+            }
+            referenced[slot] = false;
+        }
+    }
+
+    /**
+     * 从索引表中删除槽，把后面同一探测链上的元素向前移动，不留删除标记
+     */
+    private void remove(int slot) {
+        int i = (int) hashes[slot] & tableMask;
+        while (table[i] != slot) {
+            i = (i + 1) & tableMask;
+        }
+        table[i] = EMPTY;
+        for (int j = (i + 1) & tableMask; table[j] != EMPTY; j = (j + 1) & tableMask) {
+            final int home = (int) hashes[table[j]] & tableMask;
+            // home 不在 (i, j] 之间时，j 上的元素可以移到空位 i
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                table[i] = table[j];
+                table[j] = EMPTY;
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * 已缓存的条目数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 估计访问频率的 Count-Min Sketch，每个计数器 4 位，16 个计数器压缩在一个 long 中。
+     * 访问次数达到 10 倍容量时所有计数减半，让频率随时间衰减，过去的热点不会一直占着缓存
+     */
+    static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+        };
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] counters;
+
+        private final int mask;
+
+        private final int sampleSize;
+
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            this.counters = new long[Math.max(8, Integer.highestOneBit(capacity - 1) << 1)];
+            this.mask = counters.length - 1;
+            this.sampleSize = 10 * capacity;
+        }
+
+        int frequency(long hash) {
+            int frequency = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                final long h = rehash(hash, row);
+                final int shift = ((int) h & 15) << 2;
+                frequency = Math.min(frequency, (int) (counters[(int) (h >>> 32) & mask] >>> shift) & 15);
+            }
+            return frequency;
+        }
+
+        void increment(long hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                final long h = rehash(hash, row);
+                final int index = (int) (h >>> 32) & mask;
+                final int shift = ((int) h & 15) << 2;
+                if (((counters[index] >>> shift) & 15) != 15) {
+                    counters[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] = (counters[i] >>> 1) & RESET_MASK;
+                }
+                additions >>>= 1;
+            }
+        }
+
+        private static long rehash(long hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return h ^ (h >>> 29);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.cnscarb.reactor.reactor;
+
+import java.util.Locale;
+
+/**
+ * Reactor 等待 IO 事件的方式
+ * <p>
+ * 默认值由 -Dreactor.selectStrategy=blocking|busy_poll 指定，也可以通过 {@link Reactor#selectStrategy(SelectStrategy)} 设置
+ */
+public enum SelectStrategy {
+    /**
+     * 没有任务时直接阻塞在 select 上，直到有事件就绪、被唤醒或定时器到期。CPU 占用最低
+     */
+    BLOCKING,
+
+    /**
+     * 阻塞之前先在 {@link Reactor#busyPollMicros(long)} 的时间窗口内反复 selectNow，
+     * 窗口内到达的事件不需要经过线程唤醒即可处理。用 CPU 换取更低的尾延迟
+     */
+    BUSY_POLL;
+
+    static final SelectStrategy DEFAULT = valueOf(System.getProperty("reactor.selectStrategy", "blocking").toUpperCase(Locale.ROOT));
+}
@@ -0,0 +1,112 @@
+package com.cnscarb.reactor.reactor;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于数组的就绪 SelectionKey 集合，替换 JDK Selector 内部的 HashSet
+ * <p>
+ * Selector 每次 select 时只会调用 {@link #add(SelectionKey)}，追加到数组末尾即可，不需要计算哈希。
+ * Reactor 按下标遍历，处理一个就置空一个，不创建 Iterator，事件循环在持续负载下不产生垃圾。
+ * <p>
+ * 只有 Selector 的实现类是 sun.nio.ch.SelectorImpl 且允许访问其字段时才能替换，见 {@link #install(Selector)}。
+ * 设置 -Dreactor.noKeySetOptimization=true 可以关闭
+ */
+final class SelectedSelectionKeySet extends AbstractSet<SelectionKey> {
+
+    private static final boolean DISABLED = Boolean.getBoolean("reactor.noKeySetOptimization");
+
+    SelectionKey[] keys = new SelectionKey[1024];
+
+    int size;
+
+    @Override
+    public boolean add(SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size++] = key;
+        return true;
+    }
+
+    /**
+     * Selector 在添加前会检查是否已经包含，同一次 select 中每个 Channel 只会被添加一次，因此总是返回 false
+     */
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index++];
+            }
+        };
+    }
+
+    /**
+     * 将 selector 内部的 selectedKeys 和 publicSelectedKeys 替换为新的 SelectedSelectionKeySet
+     *
+     * @return 替换失败（不是 JDK 的 SelectorImpl，或者模块系统不允许访问）时返回 null，调用方使用 {@link Selector#selectedKeys()}
+     */
+    static SelectedSelectionKeySet install(Selector selector) {
+        if (DISABLED) {
+            return null;
+        }
+        try {
+            final Class<?> selectorImpl = Class.forName("sun.nio.ch.SelectorImpl", false, Selector.class.getClassLoader());
+            if (!selectorImpl.isInstance(selector)) {
+                return null;
+            }
+            final Field selectedKeysField = selectorImpl.getDeclaredField("selectedKeys");
+            final Field publicSelectedKeysField = selectorImpl.getDeclaredField("publicSelectedKeys");
+            // 需要 --add-opens java.base/sun.nio.ch=ALL-UNNAMED，否则抛出 InaccessibleObjectException
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+            final SelectedSelectionKeySet keySet = new SelectedSelectionKeySet();
+            selectedKeysField.set(selector, keySet);
+            publicSelectedKeysField.set(selector, keySet);
+            return keySet;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 无法替换，退回 JDK 自带的 HashSet
+            return null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.cnscarb.reactor.reactor;
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * 就绪事件处理器，作为附件关联到 SelectionKey 上，由 Reactor 在事件就绪时分发
+ * <p>
+ * 在 MainReactor 中是 Acceptor，在 SubReactor 中是 Handler
+ */
+@FunctionalInterface
+public interface SelectionHandler {
+
+    /**
+     * 处理就绪的事件，在 Reactor 线程中调用
+     *
+     * @param key 就绪的 SelectionKey，通过 {@link SelectionKey#readyOps()} 获取就绪的事件
+     */
+    void handle(SelectionKey key);
+
+    /**
+     * Reactor 重建 Selector 后，Channel 重新注册得到了新的 SelectionKey，保存了旧 SelectionKey 的处理器需要替换
+     */
+    default void selectionKeyChanged(SelectionKey newKey) {
+    }
+}
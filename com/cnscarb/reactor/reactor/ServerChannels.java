@@ -0,0 +1,74 @@
+package com.cnscarb.reactor.reactor;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 打开并绑定监听的 ServerSocketChannel，支持 TCP（{@link java.net.InetSocketAddress}）
+ * 和 Unix 域套接字（{@link UnixDomainSocketAddress}，JDK 16+）。
+ * <p>
+ * 两种 ServerSocketChannel 接收到的都是 {@link SocketChannel}，Handler、管道和 Sub Reactor 不需要区分。
+ * 同一主机上的客户端通过 Unix 域套接字连接时不经过 TCP/IP 协议栈
+ */
+final class ServerChannels {
+
+    private ServerChannels() {
+    }
+
+    /**
+     * 按地址类型打开 ServerSocketChannel
+     */
+    static ServerSocketChannel open(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            return ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        }
+        return ServerSocketChannel.open();
+    }
+
+    /**
+     * 绑定地址。Unix 域套接字绑定时会创建套接字文件，进程异常退出后文件会残留，再次绑定会失败，
+     * 因此绑定前清理没有进程在监听的残留文件，正常退出时删除文件
+     *
+     * @param backlog 监听队列长度，0 表示使用默认值
+     */
+    static void bind(ServerSocketChannel channel, SocketAddress address, int backlog) throws IOException {
+        if (!(address instanceof UnixDomainSocketAddress)) {
+            channel.bind(address, backlog);
+            return;
+        }
+        final Path path = ((UnixDomainSocketAddress) address).getPath();
+        deleteStaleSocketFile(path);
+        channel.bind(address, backlog);
+        path.toFile().deleteOnExit();
+    }
+
+    /**
+     * 路径上是连接不上的套接字文件时删除它。仍有进程在监听，或者路径上是普通文件时抛出 BindException，不误删
+     */
+    private static void deleteStaleSocketFile(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (!Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther()) {
+            throw new BindException("Not a socket file: " + path);
+        }
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+        } catch (ConnectException e) {
+            // 没有进程在监听，是上次异常退出残留的文件
+            Files.deleteIfExists(path);
+            return;
+        }
+        throw new BindException("Address already in use: " + path);
+    }
+}
@@ -0,0 +1,88 @@
+package com.cnscarb.reactor.reactor;
+
+import com.cnscarb.reactor.codec.LineFrameDecoder;
+import com.cnscarb.reactor.codec.UpperCaseCodec;
+import com.cnscarb.reactor.journal.Journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 流式处理器，支持任意长度的行
+ * <p>
+ * 大写转换可以逐段进行，不需要等一整行读完。每次读取后立即转换并发送已读到的内容，遇到换行符时再补上提示符。
+ * 累积 Buffer 中只保留末尾被拆开的 UTF-8 字符和可能属于 \r\n 的 \r，因此每个连接占用的内存与行长度无关。
+ * <p>
+ * 发送队列超过高水位线时暂停读取（见 {@link NioHandler#updateInterestOps()}），客户端发送得再快也不会让内存增长
+ */
+public class StreamingNioHandler extends NioHandler {
+
+    public StreamingNioHandler(Reactor reactor, SocketChannel socket) throws IOException {
+        // 不按完整的行分帧，不需要默认的帧解码器
+        super(reactor, socket, false);
+    }
+
+    /**
+     * 转换并转发累积 Buffer 中的所有内容，不等待行结束
+     */
+    @Override
+    protected void decodeFrames() throws IOException {
+        input.flip();
+        final int limit = input.limit();
+        try {
+            while (input.hasRemaining() && !hasFlag(CLOSE_AFTER_FLUSH)) {
+                final int start = input.position();
+                final int delimiter = LineFrameDecoder.indexOf(input, start, limit);
+                if (delimiter < 0) {
+                    // 行还没有结束，转发除末尾 \r 和不完整 UTF-8 字符之外的所有内容
+                    int end = limit;
+                    if (input.get(end - 1) == LineFrameDecoder.CR) {
+                        end--;
+                    } else {
+                        end -= UpperCaseCodec.incompleteSequenceLength(input, start, end);
+                    }
+                    if (end > start) {
+                        emit(start, end, limit);
+                        setFlag(LINE_STARTED);
+                    }
+                    input.position(end);
+                    break;
+                }
+
+                final int end = LineFrameDecoder.frameEnd(input, delimiter);
+                if (input.get(delimiter) == LineFrameDecoder.ETX || (end == start && !hasFlag(LINE_STARTED))) {
+                    // 用户只敲了个回车，或者输入了 ctrl+c，发送完已有的响应后断开连接
+                    setFlag(CLOSE_AFTER_FLUSH);
+                    input.position(limit);
+                    break;
+                }
+                if (end > start) {
+                    emit(start, end, limit);
+                }
+                putPrompt(outbound.tail(PROMPT.capacity()));
+                clearFlag(LINE_STARTED);
+                input.position(delimiter + 1);
+            }
+        } finally {
+            input.limit(limit);
+            input.compact();
+        }
+    }
+
+    /**
+     * 将累积 Buffer 中 [start, end) 的内容转换成大写，写入发送队列，之后恢复 limit。
+     * Reactor 设置了请求日志时，每段内容和它的转换结果追加一条记录，跨多次读取的长行对应多条记录，提示符不记录
+     */
+    private void emit(int start, int end, int limit) {
+        input.limit(end);
+        final ByteBuffer out = outbound.tail(UpperCaseCodec.MAX_EXPANSION * (end - start));
+        final int responseStart = out.position();
+        UpperCaseCodec.encode(input, out);
+        final Journal journal = reactor.journal();
+        if (journal != null) {
+            appendJournal(journal, start, end, out, responseStart);
+        }
+        input.limit(limit);
+    }
+}
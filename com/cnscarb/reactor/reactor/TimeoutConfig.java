@@ -0,0 +1,67 @@
+package com.cnscarb.reactor.reactor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接的读超时、写超时、空闲超时，0 表示不启用。
+ * <p>
+ * 不可变，同一个 Reactor 上的连接共享一个实例，见 {@link Reactor#timeouts(TimeoutConfig)}。
+ * Handler 只保存它的引用和最近一次读写的时间，不为每个连接保存一份超时配置
+ */
+public final class TimeoutConfig {
+
+    /**
+     * 默认值，来自 -Dreactor.readTimeoutMillis、-Dreactor.writeTimeoutMillis、-Dreactor.idleTimeoutMillis
+     */
+    public static final TimeoutConfig DEFAULT = of(
+        Long.getLong("reactor.readTimeoutMillis", 0),
+        Long.getLong("reactor.writeTimeoutMillis", 0),
+        Long.getLong("reactor.idleTimeoutMillis", 0),
+        TimeUnit.MILLISECONDS);
+
+    final long readTimeoutNanos;
+
+    final long writeTimeoutNanos;
+
+    final long idleTimeoutNanos;
+
+    private TimeoutConfig(long readTimeoutNanos, long writeTimeoutNanos, long idleTimeoutNanos) {
+        if (readTimeoutNanos < 0 || writeTimeoutNanos < 0 || idleTimeoutNanos < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        this.readTimeoutNanos = readTimeoutNanos;
+        this.writeTimeoutNanos = writeTimeoutNanos;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+    }
+
+    public static TimeoutConfig of(long readTimeout, long writeTimeout, long idleTimeout, TimeUnit unit) {
+        return new TimeoutConfig(unit.toNanos(readTimeout), unit.toNanos(writeTimeout), unit.toNanos(idleTimeout));
+    }
+
+    /**
+     * 返回修改了读超时的新实例
+     */
+    public TimeoutConfig readTimeout(long timeout, TimeUnit unit) {
+        return new TimeoutConfig(unit.toNanos(timeout), writeTimeoutNanos, idleTimeoutNanos);
+    }
+
+    /**
+     * 返回修改了写超时的新实例
+     */
+    public TimeoutConfig writeTimeout(long timeout, TimeUnit unit) {
+        return new TimeoutConfig(readTimeoutNanos, unit.toNanos(timeout), idleTimeoutNanos);
+    }
+
+    /**
+     * 返回修改了空闲超时的新实例
+     */
+    public TimeoutConfig idleTimeout(long timeout, TimeUnit unit) {
+        return new TimeoutConfig(readTimeoutNanos, writeTimeoutNanos, unit.toNanos(timeout));
+    }
+
+    @Override
+    public String toString() {
+        return "TimeoutConfig(read=" + readTimeoutNanos + "ns, write=" + writeTimeoutNanos
+            + "ns, idle=" + idleTimeoutNanos + "ns)";
+    }
+}
@@ -0,0 +1,194 @@
+package com.cnscarb.reactor.reactor;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务线程组，由 {@link MultiThreadNioHandler} 使用
+ * <p>
+ * 每个线程是一条串行执行的通道（Lane），有自己的有界任务队列。每个连接创建时固定分配到一条通道，
+ * 同一连接的任务按提交顺序执行，不需要加锁；不同连接分散在不同通道上并行执行，线程数可以超过 CPU 核数而不会争抢同一个队列。
+ * <p>
+ * 队列满时不阻塞提交方，连接暂停读取并登记到通道上，通道腾出空间后再恢复，压力通过 TCP 流量控制传回客户端。
+ * <p>
+ * 线程名为 worker-{组编号}-{通道编号}，是守护线程，不阻止进程退出；不再使用时调用 {@link #shutdown()} 停止
+ */
+public class WorkerGroup {
+
+    private static final AtomicInteger GROUP_ID = new AtomicInteger();
+
+    private final Lane[] lanes;
+
+    private final Thread[] threads;
+
+    private final AtomicInteger index = new AtomicInteger();
+
+    /**
+     * @param nThreads      通道（线程）数
+     * @param queueCapacity 每条通道的任务队列容量
+     */
+    public WorkerGroup(int nThreads, int queueCapacity) {
+        lanes = new Lane[nThreads];
+        threads = new Thread[nThreads];
+        final int groupId = GROUP_ID.getAndIncrement();
+        for (int i = 0; i < nThreads; i++) {
+            lanes[i] = new Lane(queueCapacity);
+            threads[i] = new Thread(lanes[i], "worker-" + groupId + "-" + i);
+            // 业务线程只为 Reactor 上的连接服务，进程的生命周期由 Reactor 线程决定
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * 停止所有通道：之后提交的任务被拒绝，对应的连接由 Reactor 线程关闭；已经在队列中的任务执行完后线程退出，
+     * 因队列已满而暂停的连接重新提交时同样被拒绝。不等待线程退出，见 {@link #awaitTermination(long, TimeUnit)}
+     */
+    public void shutdown() {
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i].shutdown = true;
+            // 唤醒阻塞在 take 上的线程
+            threads[i].interrupt();
+        }
+    }
+
+    /**
+     * 等待所有通道的线程退出
+     *
+     * @return 超时前全部退出返回 true
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+            }
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 默认的业务线程组，线程数和队列容量由 -Dreactor.workerThreads 和 -Dreactor.workerQueueCapacity 指定，首次使用时创建
+     */
+    public static WorkerGroup defaultGroup() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static class DefaultHolder {
+        static final WorkerGroup INSTANCE = new WorkerGroup(
+            Integer.getInteger("reactor.workerThreads", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("reactor.workerQueueCapacity", 1024));
+    }
+
+    /**
+     * 为新连接选择一条通道，轮询
+     */
+    public Lane next() {
+        return lanes[Math.floorMod(index.getAndIncrement(), lanes.length)];
+    }
+
+    /**
+     * 串行执行任务的通道
+     */
+    public static final class Lane implements Runnable {
+
+        private final BlockingQueue<Runnable> queue;
+
+        /**
+         * 因队列已满而暂停的连接，通道每执行完一个任务恢复一个
+         */
+        private final Queue<MultiThreadNioHandler> paused = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 已停止，不再接受新任务
+         */
+        private volatile boolean shutdown;
+
+        Lane(int queueCapacity) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * 提交任务，不阻塞
+         *
+         * @return 队列已满时返回 false，调用方应调用 {@link #park(MultiThreadNioHandler)}
+         * @throws RejectedExecutionException 通道已停止
+         */
+        boolean offer(Runnable task) {
+            if (shutdown) {
+                throw new RejectedExecutionException("worker group is shut down");
+            }
+            if (!queue.offer(task)) {
+                return false;
+            }
+            // 入队时通道可能正好停止，线程已经取完剩余任务，取回任务后拒绝；取不回说明线程会执行它
+            if (shutdown && queue.remove(task)) {
+                throw new RejectedExecutionException("worker group is shut down");
+            }
+            return true;
+        }
+
+        /**
+         * 登记一个因队列已满而暂停的连接。登记之前通道可能已经清空了队列，因此登记后再检查一次，有空间就立即恢复
+         */
+        void park(MultiThreadNioHandler handler) {
+            paused.offer(handler);
+            if (queue.remainingCapacity() > 0 || shutdown) {
+                // 已停止时线程可能已经退出，不会再恢复登记的连接，立即恢复，重新提交时被拒绝
+                resumeOne();
+            }
+        }
+
+        /**
+         * 让一个暂停的连接重新提交任务。重新提交在连接自己的 Reactor 线程中执行，可能再次失败并重新登记
+         */
+        private void resumeOne() {
+            final MultiThreadNioHandler handler = paused.poll();
+            if (handler != null) {
+                handler.reactor.execute(handler.resumeTask);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!shutdown) {
+                    runTask(queue.take());
+                }
+            } catch (InterruptedException e) {
+                // shutdown 唤醒
+            }
+            // 清除中断标记，执行完已经排队的任务，它们的连接交回 Reactor 线程后照常发送响应
+            Thread.interrupted();
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                runTask(task);
+            }
+            // 暂停的连接重新提交时被拒绝，由各自的 Reactor 线程关闭
+            while (!paused.isEmpty()) {
+                resumeOne();
+            }
+        }
+
+        private void runTask(Runnable task) {
+            if (!paused.isEmpty()) {
+                // 取出任务腾出了一个位置
+                resumeOne();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}